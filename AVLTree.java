@@ -1,6 +1,35 @@
 //Noam Blau
 //Ido Schwartz
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
 /**
  *
  * AVLTree
@@ -11,9 +40,22 @@
  */
 
 public class AVLTree {
+	//the binary format of writeTo
+	private static final int SNAPSHOT_MAGIC = 0x41564C54; //"AVLT"
+	private static final byte SNAPSHOT_VERSION = 1;
+	private static final int SNAPSHOT_BUFFER_SIZE = 1 << 16;
 	private IAVLNode root;
 	private IAVLNode min;
 	private IAVLNode max;
+	//the virtual node shared by all the leaves of the tree
+	private final IAVLNode virtualNode;
+	//the results of splitNodes, besides the returned root
+	private IAVLNode splitRight;
+	private IAVLNode splitFound;
+	//the counters of the tree's work, null when they are disabled (the default)
+	private Metrics metrics;
+	//the aggregate which is kept in every node next to its size, null if there is none
+	private Aggregator<?> aggregator;
 	
 	/**
 	   * public AVLTree()
@@ -27,6 +69,63 @@ public class AVLTree {
 		this.root = null;
 		this.min = null;
 		this.max = null;
+		this.virtualNode = new AVLNode();
+	}
+
+	/**
+	   * public AVLTree(Aggregator<?> aggregator)
+	   *
+	   * constructor - creates an empty tree which keeps in every node the aggregate
+	   * of its subtree, for aggregate(lo, hi).
+	   * nodes can be moved between trees (join, union...) only if they have the same aggregator.
+	   * 
+	   * time complexity: O(1)
+	   *
+	   */
+	public AVLTree(Aggregator<?> aggregator) {
+		this();
+		this.aggregator = aggregator;
+	}
+
+	/**
+	   * public static AVLTree fromSorted(int[] keys, String[] infos)
+	   *
+	   * builds a balanced tree with the items (keys[i], infos[i]),
+	   * without searching or rebalancing.
+	   * precondition: keys is sorted in strictly increasing order, infos.length == keys.length
+	   *
+	   * time complexity: O(n)
+	   *
+	   */
+	public static AVLTree fromSorted(int[] keys, String[] infos) {
+		AVLTree tree = new AVLTree();
+		if (keys.length == 0) return tree;
+		tree.setRoot(tree.buildBalanced(keys, infos, 0, keys.length));
+		tree.getRoot().setParent(null);
+		tree.min = subtreeMin(tree.getRoot());
+		tree.max = subtreeMax(tree.getRoot());
+		return tree;
+	}
+
+	/**
+	   * private IAVLNode buildBalanced(int[] keys, String[] infos, int from, int to)
+	   *
+	   * a recursive method that builds a perfectly balanced subtree
+	   * of the items in the indices [from, to) and returns its root
+	   * (the virtual node if the range is empty).
+	   * the middle item is the root, so the heights of the sons differ by at most 1.
+	   *
+	   * time complexity: O(to - from)
+	   *
+	   */
+	private IAVLNode buildBalanced(int[] keys, String[] infos, int from, int to) {
+		if (from >= to) return this.virtualNode;
+		int mid = (from + to) >>> 1;
+		IAVLNode node = newNode(keys[mid], infos[mid]);
+		node.connectSon(buildBalanced(keys, infos, from, mid), 'L'); //build the left subtree
+		node.connectSon(buildBalanced(keys, infos, mid + 1, to), 'R'); //build the right subtree
+		updateParent(node);
+		return node;
 	}
 
 	/**
@@ -42,30 +141,107 @@ public class AVLTree {
   }
   
   /**
-   * private static IAVLNode treePosition(int k, IAVLNode root)
+   * private IAVLNode treePosition(int k, IAVLNode root)
    *
    * returns the node with key k if it exists in the tree
    * otherwise, returns its node predecessor if it was in the tree
+   * counts the descent and its depth if the metrics are enabled
    * 
    * time complexity: O(log(n))
    */
-  private static IAVLNode treePosition(int k, IAVLNode root) {
+  private IAVLNode treePosition(int k, IAVLNode root) {
 	  IAVLNode node = root;
 	  IAVLNode position = node;
+	  int depth = 0;
 	  
 	//searching the given key, from the root down
 	  while (node.isRealNode()) { 
 		  position = node;
+		  depth++;
 		  if (k == node.getKey()) //if true we found the node with key k 
-			  return node;
+			  break;
 		  else if (k < node.getKey()) //if true the possible location for the node is in the left subtree
 			  node = node.getLeft();
 		  else
 			  node = node.getRight();
 	  }
+	  if (this.metrics != null)
+		  this.metrics.recordDescent(depth);
 	  return position;
   }
 
+  /**
+   * private AVLNode newNode(int k, String i)
+   *
+   * returns a new real node with key k and info i: an AggregateNode
+   * if the tree has an aggregator, otherwise a plain AVLNode
+   * 
+   * time complexity: O(1)
+   */
+  private AVLNode newNode(int k, String i) {
+	  return (this.aggregator == null) ? new AVLNode(k, i) : new AggregateNode(k, i);
+  }
+
+  /**
+   * private boolean keepsAggregator(IAVLNode node)
+   *
+   * returns true if node keeps the aggregate of the tree's aggregator,
+   * or keeps none if the tree has no aggregator, so it can be linked into the tree
+   * 
+   * time complexity: O(1)
+   */
+  private boolean keepsAggregator(IAVLNode node) {
+	  if (!(node instanceof AggregateNode))
+		  return this.aggregator == null;
+	  return ((AggregateNode) node).aggregator() == this.aggregator;
+  }
+
+  /**
+   * private IAVLNode insertPosition(int k)
+   *
+   * returns treePosition(k) from the root, or null if the tree is empty.
+   * a key which isn't smaller than the max (or bigger than the min) is placed
+   * next to the cached max (min) without a descent, so appends of
+   * increasing (or decreasing) keys don't pay for the height of the tree.
+   * 
+   * time complexity: O(1) for k >= max or k <= min, otherwise O(log(n))
+   */
+  private IAVLNode insertPosition(int k) {
+	  if (this.empty()) return null;
+	  if (k >= this.max.getKey() || k <= this.min.getKey()) {
+		  if (this.metrics != null)
+			  this.metrics.recordDescent(1);
+		  return (k >= this.max.getKey()) ? this.max : this.min;
+	  }
+	  return treePosition(k, this.getRoot());
+  }
+
+  /**
+   * private IAVLNode fingerPosition(IAVLNode finger, int k)
+   *
+   * returns treePosition(k), starting from the node finger instead of the root.
+   * climbs from finger only until the subtree of the node reached covers k
+   * (its parent is on the other side of k than finger), and descends from there.
+   * precondition: finger is a node of the tree
+   * 
+   * time complexity: O(h) for h the height of that subtree, O(log(d)) for d keys between
+   * finger and k in most cases, and O(log(n)) at worst
+   */
+  private IAVLNode fingerPosition(IAVLNode finger, int k) {
+	  IAVLNode node = finger;
+	  boolean right = k > node.getKey();
+	  IAVLNode parent = node.getParent();
+	  while (node.getKey() != k && parent != null) {
+		  boolean fromLeft = parent.getLeft() == node;
+		  //k is between finger and parent, so it is in the range of node's subtree
+		  if (right && fromLeft && k < parent.getKey()) break;
+		  if (!right && !fromLeft && k > parent.getKey()) break;
+		  node = parent;
+		  parent = node.getParent();
+	  }
+	  return treePosition(k, node);
+  }
+
  /**
    * public String search(int k)
    *
@@ -76,7 +252,10 @@ public class AVLTree {
    */
 	public String search(int k)
 	{
+		long start = (this.metrics != null) ? System.nanoTime() : 0;
 		IAVLNode searched = searchNode(k);
+		if (this.metrics != null)
+			this.metrics.searchLatency.record(System.nanoTime() - start);
 		if (searched == null) 
 			return null;//k isn't a key in the tree
 		else
@@ -93,12 +272,30 @@ public class AVLTree {
 	   */
   public IAVLNode searchNode(int k) {
 	  if (this.empty()) return null;
+	  if (k > this.max.getKey() || k < this.min.getKey()) return null; //out of the range of the keys
 	  IAVLNode node = treePosition(k, this.getRoot());
 	  if(node.getKey() == k) //if true k is a key in the tree
 		  return node;
 	  return null;//k isn't a key in the tree
   }
   
+  /**
+   * public IAVLNode searchNodeNear(IAVLNode finger, int k)
+   *
+   * returns the node with key k if it exists in the tree, otherwise null,
+   * like searchNode, but the search starts from the node finger (a node which was
+   * returned before, like the previous key of a scan) and climbs only as far as needed.
+   * if finger is null the search starts from the root.
+   * precondition: finger is null or a node of the tree (which wasn't deleted)
+   * 
+   * time complexity: O(log(d)) for d keys between finger and k in most cases, O(log(n)) at worst
+   */
+  public IAVLNode searchNodeNear(IAVLNode finger, int k) {
+	  if (finger == null || this.empty()) return searchNode(k);
+	  IAVLNode node = fingerPosition(finger, k);
+	  return (node.getKey() == k) ? node : null;
+  }
+  
   /**
    *  private void insertUpdateMinMax(IAVLNode node)
    *
@@ -149,7 +346,7 @@ public class AVLTree {
    * private IAVLNode successor(IAVLNode node)
    *
    * gets a node in the tree
-   * returns the successor of the node
+   * returns the successor of the node, or null if it is the maximum
    * 
    * time complexity: O(log(n))
    */
@@ -165,7 +362,7 @@ public class AVLTree {
 	  //node has no right child so we go up to root from the node
 	  //we returns the first node that we came from its left child
 	  successor = node;
-	  while (successor.isRightSon()) {
+	  while (successor.getParent() != null && successor.isRightSon()) {
 		  successor = successor.getParent();
 	  }
 	  return successor.getParent();  
@@ -175,7 +372,7 @@ public class AVLTree {
    * private IAVLNode predecessor(IAVLNode node)
    *
    * gets a node in the tree
-   * returns the predecessor of the node
+   * returns the predecessor of the node, or null if it is the minimum
    * 
    * time complexity: O(log(n))
    */
@@ -191,12 +388,180 @@ public class AVLTree {
 	  //node has no left child so we go up to root from the node
 	  //we returns the first node that we came from its right child
 	  predecessor = node;
-	  while (!predecessor.isRightSon()) {
+	  while (predecessor.getParent() != null && !predecessor.isRightSon()) {
 		  predecessor = predecessor.getParent();
 	  }
 	  return predecessor.getParent();
  }
 
+  /**
+   * public IAVLNode ceilingEntry(int k)
+   *
+   * returns the node with the smallest key which is bigger than or equal to k,
+   * or null if there is no such node.
+   *
+   * time complexity: O(log(n))
+   */
+  public IAVLNode ceilingEntry(int k) {
+	  IAVLNode currNode = this.getRoot(), found = null;
+	  while (currNode != null && currNode.isRealNode()) {
+		  if (currNode.getKey() == k)
+			  return currNode;
+		  if (currNode.getKey() > k) {
+			  found = currNode;
+			  currNode = currNode.getLeft();
+		  }
+		  else
+			  currNode = currNode.getRight();
+	  }
+	  return found;
+  }
+
+  /**
+   * public IAVLNode floorEntry(int k)
+   *
+   * returns the node with the largest key which is smaller than or equal to k,
+   * or null if there is no such node.
+   *
+   * time complexity: O(log(n))
+   */
+  public IAVLNode floorEntry(int k) {
+	  IAVLNode currNode = this.getRoot(), found = null;
+	  while (currNode != null && currNode.isRealNode()) {
+		  if (currNode.getKey() == k)
+			  return currNode;
+		  if (currNode.getKey() < k) {
+			  found = currNode;
+			  currNode = currNode.getRight();
+		  }
+		  else
+			  currNode = currNode.getLeft();
+	  }
+	  return found;
+  }
+
+  /**
+   * public IAVLNode higherEntry(int k)
+   *
+   * returns the node with the smallest key which is strictly bigger than k,
+   * or null if there is no such node.
+   *
+   * time complexity: O(log(n))
+   */
+  public IAVLNode higherEntry(int k) {
+	  IAVLNode currNode = this.getRoot(), found = null;
+	  while (currNode != null && currNode.isRealNode()) {
+		  if (currNode.getKey() > k) {
+			  found = currNode;
+			  currNode = currNode.getLeft();
+		  }
+		  else
+			  currNode = currNode.getRight();
+	  }
+	  return found;
+  }
+
+  /**
+   * public IAVLNode lowerEntry(int k)
+   *
+   * returns the node with the largest key which is strictly smaller than k,
+   * or null if there is no such node.
+   *
+   * time complexity: O(log(n))
+   */
+  public IAVLNode lowerEntry(int k) {
+	  IAVLNode currNode = this.getRoot(), found = null;
+	  while (currNode != null && currNode.isRealNode()) {
+		  if (currNode.getKey() < k) {
+			  found = currNode;
+			  currNode = currNode.getRight();
+		  }
+		  else
+			  currNode = currNode.getLeft();
+	  }
+	  return found;
+  }
+
+  /**
+   * public Integer ceilingKey(int k)
+   *
+   * returns the smallest key in the tree which is bigger than or equal to k,
+   * or null if there is no such key.
+   *
+   * time complexity: O(log(n))
+   */
+  public Integer ceilingKey(int k) {
+	  IAVLNode node = ceilingEntry(k);
+	  return (node == null) ? null : node.getKey();
+  }
+
+  /**
+   * public Integer floorKey(int k)
+   *
+   * returns the largest key in the tree which is smaller than or equal to k,
+   * or null if there is no such key.
+   *
+   * time complexity: O(log(n))
+   */
+  public Integer floorKey(int k) {
+	  IAVLNode node = floorEntry(k);
+	  return (node == null) ? null : node.getKey();
+  }
+
+  /**
+   * public Integer higherKey(int k)
+   *
+   * returns the smallest key in the tree which is strictly bigger than k,
+   * or null if there is no such key.
+   *
+   * time complexity: O(log(n))
+   */
+  public Integer higherKey(int k) {
+	  IAVLNode node = higherEntry(k);
+	  return (node == null) ? null : node.getKey();
+  }
+
+  /**
+   * public Integer lowerKey(int k)
+   *
+   * returns the largest key in the tree which is strictly smaller than k,
+   * or null if there is no such key.
+   *
+   * time complexity: O(log(n))
+   */
+  public Integer lowerKey(int k) {
+	  IAVLNode node = lowerEntry(k);
+	  return (node == null) ? null : node.getKey();
+  }
+
+  /**
+   * private static IAVLNode subtreeMin(IAVLNode node)
+   *
+   * gets a real node
+   * returns the node with the smallest key in its subtree
+   *
+   * time complexity: O(log(n))
+   */
+  private static IAVLNode subtreeMin(IAVLNode node) {
+	  while (node.getLeft().isRealNode())
+		  node = node.getLeft();
+	  return node;
+  }
+
+  /**
+   * private static IAVLNode subtreeMax(IAVLNode node)
+   *
+   * gets a real node
+   * returns the node with the largest key in its subtree
+   *
+   * time complexity: O(log(n))
+   */
+  private static IAVLNode subtreeMax(IAVLNode node) {
+	  while (node.getRight().isRealNode())
+		  node = node.getRight();
+	  return node;
+  }
+
   /**
    * public int insert(int k, String i)
    *
@@ -209,22 +574,101 @@ public class AVLTree {
    *  time complexity: O(log(n))
    */
   public int insert(int k, String i) {
+	  if (this.metrics == null)
+		  return insertItem(k, i);
+	  long allocated = Metrics.allocatedBytes();
+	  long start = System.nanoTime();
+	  int insertVal = insertItem(k, i);
+	  this.metrics.insertLatency.record(System.nanoTime() - start);
+	  Metrics.recordAllocation(this.metrics.insertAllocation, allocated);
+	  this.metrics.recordShape(this.getRoot());
+	  return insertVal;
+  }
+
+  /**
+   * public IAVLNode insertNear(IAVLNode finger, int k, String i)
+   *
+   * inserts an item with key k and info i to the tree, like insert,
+   * but the position of k is found from the node finger, like searchNodeNear.
+   * returns the node of k: the new node, or the existing node (which keeps
+   * its info) if k was already in the tree. so the returned node can be the
+   * finger of the next key of a clustered stream of keys.
+   * if finger is null the position is found from the root (or the min/max).
+   * precondition: finger is null or a node of the tree (which wasn't deleted)
+   * 
+   * time complexity: O(log(d)) for d keys between finger and k in most cases,
+   * O(log(n)) at worst, plus the rebalancing of insert
+   */
+  public IAVLNode insertNear(IAVLNode finger, int k, String i) {
+	  long allocated = (this.metrics != null) ? Metrics.allocatedBytes() : -1;
+	  long start = (this.metrics != null) ? System.nanoTime() : 0;
+	  IAVLNode position = (finger == null || this.empty()) ? insertPosition(k) : fingerPosition(finger, k);
+	  IAVLNode node = position;
+	  if (position == null || position.getKey() != k) {
+		  AVLNode insertNode = newNode(k, i);
+		  insertAt(position, insertNode);
+		  node = insertNode;
+	  }
+	  if (this.metrics != null) {
+		  this.metrics.insertLatency.record(System.nanoTime() - start);
+		  Metrics.recordAllocation(this.metrics.insertAllocation, allocated);
+		  this.metrics.recordShape(this.getRoot());
+	  }
+	  return node;
+  }
+
+  /**
+   * private int insertItem(int k, String i)
+   *
+   * inserts an item with key k and info i to the AVL tree, without the metrics of insert.
+   * returns the same as insert.
+   * 
+   *  time complexity: O(log(n))
+   */
+  private int insertItem(int k, String i) {
+	   IAVLNode insertNodeParent = insertPosition(k);
+	   // The key exists in the tree, checked before the new node
+	   // is created so a failed insert allocates nothing
+	   if (insertNodeParent != null && k == insertNodeParent.getKey())
+		   return -1;
+	   return insertAt(insertNodeParent, k, i);
+  }
+
+  /**
+   * private int insertAt(IAVLNode insertNodeParent, int k, String i)
+   *
+   * inserts an item with key k and info i as a son of insertNodeParent,
+   * and returns the number of balancing operations, like insert.
+   * precondition: insertNodeParent is treePosition(k) (null if the tree is empty), k isn't in the tree
+   * 
+   *  time complexity: O(log(n))
+   */
+  private int insertAt(IAVLNode insertNodeParent, int k, String i) {
+	  return insertAt(insertNodeParent, newNode(k, i));
+  }
+
+  /**
+   * private int insertAt(IAVLNode insertNodeParent, AVLNode insertNode)
+   *
+   * inserts the new node insertNode as a son of insertNodeParent,
+   * and returns the number of balancing operations, like insert.
+   * precondition: insertNodeParent is treePosition(insertNode.key) (null if the tree is empty),
+   * insertNode.key isn't in the tree
+   * 
+   *  time complexity: O(log(n))
+   */
+  private int insertAt(IAVLNode insertNodeParent, AVLNode insertNode) {
 	  //This will be the number of balance operations after the insertion
 	   int insertVal = 0;
-	   AVLNode insertNode = new AVLNode(k, i);
 	   insertUpdateMinMax(insertNode);
-	   if (this.empty()) {
+	   if (insertNodeParent == null) {
 		   //If the tree is empty, 
 		   //there is no need for balance operations, only to change the root
 		   this.setRoot(insertNode);
 	   }  
 	   else
 	   {
-		   IAVLNode insertNodeParent = treePosition(k,this.getRoot());
-		   // The key exists in the tree
-		   if (k == insertNodeParent.getKey())
-			   return -1;
-		   else if (k < insertNodeParent.getKey())
+		   if (insertNode.getKey() < insertNodeParent.getKey())
 			   insertNodeParent.connectSon(insertNode, 'L');
 		   else
 			   insertNodeParent.connectSon(insertNode, 'R');
@@ -241,6 +685,9 @@ public class AVLTree {
    * of the tree and the nodes
    * returns the number of balancing operations(promotion/demotion/rotation)
    * it used.
+   * the balancing stops at the first node which its height didn't change
+   * (or after a rotation which restored the height of the subtree),
+   * and the sizes are updated on the way up, so the path to the root is walked once.
    * 
    * time complexity: O(logn)
    */
@@ -249,120 +696,138 @@ public class AVLTree {
 	   char dir;
 	   IAVLNode parent  = insertNode.getParent();
 	   IAVLNode son = insertNode;
+	   insertNode.updateSize(); //after join, insertNode has subtrees
 	   while (parent != null) {
+		   parent.updateSize(); //the sizes below parent are already updated
+		   if(!isHeightDiff(parent, son,0)) {
+			   //the height of parent didn't change, so the tree above it stays balanced
+			   parent = parent.getParent();
+			   break;
+		   }
 		   if(son.isRightSon())
 			   dir = 'R';
 		   else
 			   dir = 'L';
-		   if(isHeightDiff(parent, son,0)){
-			   if(dir == 'R') {
-				   // INSERT RIGHT CASE 1 -> Promote
-				   if (isHeightDiff(parent, parent.getLeft(),1)) {
-					  updateParent(parent); //promote
-					  rebalanceCount++;
+		   if(dir == 'R') {
+			   // INSERT RIGHT CASE 1 -> Promote
+			   if (isHeightDiff(parent, parent.getLeft(),1)) {
+				  updateParent(parent); //promote
+				  countPromotion();
+				  rebalanceCount++;
+			   }
+			   else if(isHeightDiff(parent, parent.getLeft(),2)) {
+				   // INSERT RIGHT CASE 2 -> Single Rotate
+				   if((isHeightDiff(son, son.getLeft(),2))&&
+						   (isHeightDiff(son, son.getRight(),1))){
+					   this.rotate(parent, 'L');
+					   rebalanceCount+=2;
+					   break; //the subtree has its height from before the insertion
+				   }
+				   //INSERT RIGHT CASE 3 -> Double Rotate
+				   else if((isHeightDiff(son, son.getLeft(),1))&&
+						   (isHeightDiff(son, son.getRight(),2))){
+					   this.doubleRotate(parent, 'R');
+					   rebalanceCount+=5;
+					   break; //the subtree has its height from before the insertion
 				   }
-				   else if(isHeightDiff(parent, parent.getLeft(),2)) {
-					   // INSERT RIGHT CASE 2 -> Single Rotate
-					   if((isHeightDiff(son, son.getLeft(),2))&&
-							   (isHeightDiff(son, son.getRight(),1))){
-						   this.rotate(parent, 'L');
-						   //The son and parent switched positions
-						   //because of the rotate
-						   IAVLNode tmp = son;
-						   son = parent;
-						   parent = tmp;
-						   rebalanceCount+=2;
-					   }
-					   //INSERT RIGHT CASE 3 -> Double Rotate
-					   else if((isHeightDiff(son, son.getLeft(),1))&&
-							   (isHeightDiff(son, son.getRight(),2))){
-						   this.doubleRotate(parent, "RL");
-						   rebalanceCount+=5;
-					   }
-					   //JOIN RIGHT CASE -> Rotate and Promote
-					   // This case can only be a result of join method use 
-					   else if((isHeightDiff(son, son.getLeft(),1))&&
-							   (isHeightDiff(son, son.getRight(),1))){
-						   this.rotate(parent, 'L');
-						   IAVLNode tmp = son;
-						   son = parent;
-						   parent = tmp;
-						   updateParent(parent); //promote
-						   rebalanceCount+=2;
-					   }
+				   //JOIN RIGHT CASE -> Rotate and Promote
+				   // This case can only be a result of join method use 
+				   else if((isHeightDiff(son, son.getLeft(),1))&&
+						   (isHeightDiff(son, son.getRight(),1))){
+					   this.rotate(parent, 'L');
+					   //The son and parent switched positions
+					   //because of the rotate
+					   IAVLNode tmp = son;
+					   son = parent;
+					   parent = tmp;
+					   updateParent(parent); //promote
+					   countPromotion();
+					   rebalanceCount+=2;
 				   }
 			   }
-			   if(dir =='L') {
-				   //INSERT LEFT CASE 1 -> Promote
-				   if(isHeightDiff(parent, parent.getRight(),1)){
-						  updateParent(parent); //promote
-						  rebalanceCount++;
+		   }
+		   else {
+			   //INSERT LEFT CASE 1 -> Promote
+			   if(isHeightDiff(parent, parent.getRight(),1)){
+					  updateParent(parent); //promote
+					  countPromotion();
+					  rebalanceCount++;
+			   }
+			   else if(isHeightDiff(parent, parent.getRight(),2)) {
+				   //INSERT LEFT CASE 2 -> Single Rotate
+				   if((isHeightDiff(son, son.getRight(),2))&&
+						   (isHeightDiff(son, son.getLeft(),1))) {
+					   this.rotate(parent, 'R');
+					   rebalanceCount+=2;
+					   break; //the subtree has its height from before the insertion
+				   }
+				   //INSERT LEFT CASE 3 -> Double Rotate
+				   else if((isHeightDiff(son, son.getRight(),1))&&
+						   (isHeightDiff(son, son.getLeft(),2))) {
+					   this.doubleRotate(parent, 'L');
+					   rebalanceCount+=5;
+					   break; //the subtree has its height from before the insertion
 				   }
-				   else if(isHeightDiff(parent, parent.getRight(),2)) {
-					   //INSERT LEFT CASE 2 -> Single Rotate
-					   if((isHeightDiff(son, son.getRight(),2))&&
-							   (isHeightDiff(son, son.getLeft(),1))) {
-						   this.rotate(parent, 'R');
-						   IAVLNode tmp = son;
-						   son = parent;
-						   parent = tmp;
-						   rebalanceCount+=2;
-					   }
-					   //INSERT LEFT CASE 3 -> Double Rotate
-					   else if((isHeightDiff(son, son.getRight(),1))&&
-							   (isHeightDiff(son, son.getLeft(),2))) {
-						   this.doubleRotate(parent, "LR");
-						   rebalanceCount+=5;
-					   }
-					 //JOIN LEFT CASE -> Single Rotate and Promote
-					   else if((isHeightDiff(son, son.getLeft(),1))&&
-							   (isHeightDiff(son, son.getRight(),1))){
-						   this.rotate(parent, 'R');
-						   IAVLNode tmp = son;
-						   son = parent;
-						   parent = tmp;
-						   updateParent(parent);
-						   rebalanceCount+=2;
-					   }
+				 //JOIN LEFT CASE -> Single Rotate and Promote
+				   else if((isHeightDiff(son, son.getLeft(),1))&&
+						   (isHeightDiff(son, son.getRight(),1))){
+					   this.rotate(parent, 'R');
+					   IAVLNode tmp = son;
+					   son = parent;
+					   parent = tmp;
+					   updateParent(parent); //promote
+					   countPromotion();
+					   rebalanceCount+=2;
 				   }
 			   }
 		   }
 		   son = parent;
 		   parent = parent.getParent();
 	   }
-	   // Update all size fields from the inserted node upto the root
-	   updateSizesfromNode(insertNode);
+	   // Update the size fields from where the balancing stopped upto the root
+	   updateSizesfromNode(parent);
 	   return rebalanceCount;
    } 
    
    /**
-    *  private int rebalanceAfterDelete(IAVLNode startDeleteNode)
+    *  private int rebalanceAfterDelete(IAVLNode startDeleteParent, char startDir)
     *
-    * Receives a node (by delete function) to start 
-    * the deletion balacing from,
-    * balances the tree and updates all the fields 
+    * Receives a node (by delete function) to start
+    * the deletion balacing from, and the direction of
+    * its son that was removed (that son might be the shared
+    * virtual node, so it can't tell its own direction),
+    * balances the tree and updates all the fields
     * of the tree and the nodes
     * returns the number of balancing operations(promotion/demotion/rotation)
     * it used.
-    * 
+    * the balancing stops at the first subtree which kept its height,
+    * and the sizes are updated on the way up, so the path to the root is walked once.
+    * precondition: the heights of the nodes from startDeleteParent up are from before the deletion
+    *
     * time complexity: O(logn)
     */
-   private int rebalanceAfterDelete(IAVLNode startDeleteNode) {
+   private int rebalanceAfterDelete(IAVLNode startDeleteParent, char startDir) {
 	   int rebalanceCount = 0;
-	   char dir;
-	   IAVLNode parent  = startDeleteNode.getParent();
-	   IAVLNode son = startDeleteNode;
+	   char dir = startDir;
+	   IAVLNode parent  = startDeleteParent;
+	   IAVLNode son;
 	   IAVLNode rightSon;
 	   IAVLNode leftSon;
 	   while (parent != null) {
-		   if(son.isRightSon())
-			   dir = 'R';
+		   parent.updateSize(); //the sizes below parent are already updated
+		   int heightBefore = parent.getHeight();
+		   //the root of parent's subtree, which changes if it is rotated
+		   IAVLNode subRoot = parent;
+		   if(dir == 'R')
+			   son = parent.getRight();
 		   else
-			   dir = 'L';
+			   son = parent.getLeft();
 		 //DELETE CASE 1 -> Demote
 		   if((isHeightDiff(parent, parent.getRight(),2))&&
 				   (isHeightDiff(parent, parent.getLeft(),2))){
 			   updateParent(parent); //demote
+			   if (this.metrics != null)
+				   this.metrics.demotions.increment();
 			   rebalanceCount++;
 		   }
 		   else if(dir == 'L') {
@@ -374,12 +839,14 @@ public class AVLTree {
 						   ((isHeightDiff(rightSon, rightSon.getLeft(),1))||
 							(isHeightDiff(rightSon, rightSon.getLeft(),2)))) {
 					   this.rotate(parent, 'L');
+					   subRoot = rightSon;
 					   rebalanceCount+=3;
 				   }
 				   // DELETE RIGHT CASE 4 -> Double Rotate
 				   else if((isHeightDiff(rightSon, rightSon.getRight(),2)) &&
 					(isHeightDiff(rightSon, rightSon.getLeft(),1))) {
-					   this.doubleRotate(parent, "RL");
+					   this.doubleRotate(parent, 'R');
+					   subRoot = parent.getParent();
 					   rebalanceCount+=6;
 				   }
 			   }
@@ -393,24 +860,43 @@ public class AVLTree {
 						   ((isHeightDiff(leftSon, leftSon.getRight(),1))||
 							(isHeightDiff(leftSon, leftSon.getRight(),2)))) {
 					   this.rotate(parent, 'R');
+					   subRoot = leftSon;
 					   rebalanceCount+=3;
 				   }
 				   // DELETE LEFT CASE 4 -> Double Rotate
 				   else if((isHeightDiff(leftSon, leftSon.getLeft(),2)) &&
 					(isHeightDiff(leftSon, leftSon.getRight(),1))) {
-					   this.doubleRotate(parent, "LR");
+					   this.doubleRotate(parent, 'L');
+					   subRoot = parent.getParent();
 					   rebalanceCount+=6;
 				   }
 			   }  
 		   }
-		   son = parent;
-		   parent = parent.getParent();
+		   parent = subRoot.getParent();
+		   if (subRoot.getHeight() == heightBefore)
+			   break; //the subtree kept its height, so the tree above it stays balanced
+		   if(parent != null && subRoot.isRightSon())
+			   dir = 'R';
+		   else
+			   dir = 'L';
 	   }
-	// Update all size fields from the inserted node upto the root
-	   updateSizesfromNode(startDeleteNode);
+	   // Update the size fields from where the balancing stopped upto the root
+	   updateSizesfromNode(parent);
 	   return rebalanceCount;
    }
    
+   /**
+    * private void countPromotion()
+    *
+    * counts a promotion if the metrics are enabled
+    * 
+    * time complexity: O(1)
+    */
+   private void countPromotion() {
+	   if (this.metrics != null)
+		   this.metrics.promotions.increment();
+   }
+
    /**
     * private static void updateParent(IAVLNode parent)
     *
@@ -428,11 +914,26 @@ public class AVLTree {
 	    *
 	    * Receives a node which is the root of the sub-tree 
 	    * before rotating and character for the rotation's direction
-	    * and rotates the sub-tree to that direction. 
+	    * and rotates the sub-tree to that direction,
+	    * counted as a single rotation if the metrics are enabled.
 	    * 
 	    * time complexity: O(1)
 	    */
    private void rotate(IAVLNode oldSubRoot, char dir) {
+	   if (this.metrics != null)
+		   this.metrics.singleRotations.increment();
+	   rotateNode(oldSubRoot, dir);
+   }
+
+	/**
+	    * private void rotateNode(IAVLNode oldSubRoot, char dir)
+	    *
+	    * rotates the sub-tree of oldSubRoot to the direction dir
+	    * (the rotation itself, without counting it).
+	    * 
+	    * time complexity: O(1)
+	    */
+   private void rotateNode(IAVLNode oldSubRoot, char dir) {
 	   IAVLNode tmp = null;
 	   // newSubRoot will be the new root of the sub-tree after the rotation
 	   IAVLNode newSubRoot;
@@ -474,23 +975,25 @@ public class AVLTree {
    }
    
    /**
-    * private void doubleRotate(IAVLNode oldSubRoot, String doubleDir) 
+    * private void doubleRotate(IAVLNode oldSubRoot, char sonDir) 
     *
     * Receives a node which is the root of the sub-tree 
-    * before rotating and string of 2 characters
-    * indicating the rotations direction
+    * before rotating and the direction of its heavy son
+    * ('L' for a left-right rotation, 'R' for a right-left rotation)
     * and rotates double rotation. 
     * 
     * time complexity: O(1)
     */
-   private void doubleRotate(IAVLNode oldSubRoot, String doubleDir) {
-	   if(doubleDir=="LR") {
-		   rotate(oldSubRoot.getLeft(),'L');
-		   rotate(oldSubRoot,'R');
+   private void doubleRotate(IAVLNode oldSubRoot, char sonDir) {
+	   if (this.metrics != null)
+		   this.metrics.doubleRotations.increment();
+	   if(sonDir == 'L') {
+		   rotateNode(oldSubRoot.getLeft(),'L');
+		   rotateNode(oldSubRoot,'R');
 	   }
-	   if(doubleDir=="RL") {
-		   rotate(oldSubRoot.getRight(),'R');
-		   rotate(oldSubRoot,'L');
+	   else {
+		   rotateNode(oldSubRoot.getRight(),'R');
+		   rotateNode(oldSubRoot,'L');
 	   }
    }
    
@@ -603,17 +1106,51 @@ public class AVLTree {
    */
    public int delete(int k)
    {
-	   //This will be the number of balancing operations
-	   int deleteVal = 0;
+	   if (this.metrics == null)
+		   return deleteItem(k);
+	   long allocated = Metrics.allocatedBytes();
+	   long start = System.nanoTime();
+	   int deleteVal = deleteItem(k);
+	   this.metrics.deleteLatency.record(System.nanoTime() - start);
+	   Metrics.recordAllocation(this.metrics.deleteAllocation, allocated);
+	   this.metrics.recordShape(this.getRoot());
+	   return deleteVal;
+   }
+
+   /**
+    * private int deleteItem(int k)
+    *
+    * deletes an item with key k from the tree, without the metrics of delete.
+    * returns the same as delete.
+    * 
+    * time complexity: O(log(n))
+    */
+   private int deleteItem(int k)
+   {
 	   // deleteNode is the node we want to delete
 	   IAVLNode deleteNode = searchNode(k);
-	   IAVLNode deleteNodeSon;
 	   // The key we want to delete is not in the tree
 	   if(deleteNode == null)
 		   return -1;
-	   deleteUpdateMinMax(k);
-	   boolean deleteNodeHasLeft = deleteNode.whichSons()[0];
-	   boolean deleteNodeHasRight = deleteNode.whichSons()[1];
+	   return deleteAt(deleteNode);
+   }
+
+   /**
+    * private int deleteAt(IAVLNode deleteNode)
+    *
+    * deletes the node deleteNode from the tree (which was already found),
+    * and returns the number of balancing operations, like delete.
+    * 
+    * time complexity: O(log(n))
+    */
+   private int deleteAt(IAVLNode deleteNode)
+   {
+	   //This will be the number of balancing operations
+	   int deleteVal = 0;
+	   IAVLNode deleteNodeSon;
+	   deleteUpdateMinMax(deleteNode.getKey());
+	   boolean deleteNodeHasLeft = deleteNode.getLeft().isRealNode();
+	   boolean deleteNodeHasRight = deleteNode.getRight().isRealNode();
 	   IAVLNode deleteNodeParent = deleteNode.getParent();
 	   if (!(deleteNodeHasLeft && deleteNodeHasRight)){ // deleteNode has 0 or 1 child
 		   if(deleteNodeHasRight)
@@ -621,13 +1158,11 @@ public class AVLTree {
 		   else
 			   deleteNodeSon = deleteNode.getLeft();
 		   if(deleteNodeParent != null) { //deleteNode is not root
-			   if(deleteNode.isRightSon())
-				   deleteNodeParent.connectSon(deleteNodeSon, 'R');
-			   else
-				   deleteNodeParent.connectSon(deleteNodeSon, 'L');
+			   char deleteDir = deleteNode.isRightSon() ? 'R' : 'L';
+			   deleteNodeParent.connectSon(deleteNodeSon, deleteDir);
 			   // In case of 0 or 1 child, the balance starts with the
-			   // son of the deleteNode (if 0, then it is virtual)
-			   deleteVal = rebalanceAfterDelete(deleteNodeSon);
+			   // parent of the deleteNode, from the side deleteNode was on
+			   deleteVal = rebalanceAfterDelete(deleteNodeParent, deleteDir);
 		   }
 		   else { //deleteNode is root
 			   deleteNodeSon.setParent(deleteNodeParent);
@@ -639,13 +1174,13 @@ public class AVLTree {
 	   }
 	   else { //deleteNode has 2 children
 		   IAVLNode deleteNodeSucc = successor(deleteNode);
-		   IAVLNode toBalance = deleteNodeSucc.getRight();
 		   IAVLNode deleteNodeSuccPar = deleteNodeSucc.getParent();
+		   char succDir = deleteNodeSucc.isRightSon() ? 'R' : 'L';
+		   //if the successor is deleteNode's right son, it takes deleteNode's place
+		   //so the balance starts with the successor itself
+		   IAVLNode toBalance = (deleteNodeSuccPar == deleteNode) ? deleteNodeSucc : deleteNodeSuccPar;
 		   //"Disconnect" the successor of deleteNode
-		   if(deleteNodeSucc.isRightSon())
-			   deleteNodeSuccPar.connectSon(deleteNodeSucc.getRight(), 'R');
-		   else
-			   deleteNodeSuccPar.connectSon(deleteNodeSucc.getRight(), 'L');
+		   deleteNodeSuccPar.connectSon(deleteNodeSucc.getRight(), succDir);
 		   if (deleteNodeParent != null) {
 			   if(deleteNode.isRightSon())
 				   deleteNodeParent.connectSon(deleteNodeSucc, 'R');
@@ -659,43 +1194,154 @@ public class AVLTree {
 		   deleteNodeSucc.connectSon(deleteNode.getRight(), 'R');
 		   deleteNodeSucc.connectSon(deleteNode.getLeft(), 'L');
 		   deleteNodeSucc.updateHeight();
-		   // In case of 2 children, the balances starts with
-		   // the node which was the succesor's son before "disconnecting"
-		   deleteVal = rebalanceAfterDelete(toBalance);
+		   if (deleteNodeSucc.getHeight() == deleteNode.getHeight()) {
+			   // In case of 2 children, the balances starts with
+			   // the node which was the succesor's parent before "disconnecting"
+			   deleteVal = rebalanceAfterDelete(toBalance, succDir);
+		   }
+		   else {
+			   //the successor was deleteNode's right son, and its new subtree is balanced
+			   //and one shorter than deleteNode's, so the balance starts above it
+			   deleteNodeSucc.updateSize();
+			   if (deleteNodeParent != null)
+				   deleteVal = rebalanceAfterDelete(deleteNodeParent, deleteNodeSucc.isRightSon() ? 'R' : 'L');
+		   }
 	   }
 	   return deleteVal;	
    }
    
 
    /**
-    * public String min()
+    * public String put(int k, String i)
     *
-    * Returns the info of the item with the smallest key in the tree,
-    * or null if the tree is empty
+    * inserts an item with key k and info i to the tree, or replaces the info
+    * of the item with key k if it exists (in place, without rebalancing).
+    * returns the previous info of k, or null if k wasn't in the tree.
     * 
-    * time complexity: O(1)
+    * time complexity: O(log(n)), one descent
     */
-   public String min()
+   public String put(int k, String i)
    {
-	   if (this.empty()) return null;
-	   return this.min.getValue();
+	   IAVLNode position = insertPosition(k);
+	   if (position != null && position.getKey() == k) {
+		   String old = position.getValue();
+		   ((AVLNode) position).setValue(i);
+		   infoChanged(position);
+		   return old;
+	   }
+	   insertAt(position, k, i);
+	   return null;
    }
 
    /**
-    * public String max()
+    * public String putIfAbsent(int k, String i)
     *
-    * Returns the info of the item with the largest key in the tree,
-    * or null if the tree is empty
+    * inserts an item with key k and info i to the tree if k isn't in it.
+    * returns the info of k if it was in the tree (which isn't changed), otherwise null.
     * 
-    * time complexity: O(1)
+    * time complexity: O(log(n)), one descent
     */
-   public String max()
+   public String putIfAbsent(int k, String i)
    {
-	   if (this.empty()) return null;
-	   return this.max.getValue();   
+	   IAVLNode position = insertPosition(k);
+	   if (position != null && position.getKey() == k)
+		   return position.getValue();
+	   insertAt(position, k, i);
+	   return null;
    }
 
-  /**
+   /**
+    * public String computeIfPresent(int k, EntryFunction function)
+    *
+    * if k is in the tree, replaces its info with function(k, info) in place,
+    * or deletes the item if the function returns null.
+    * returns the new info, or null if k wasn't in the tree or was deleted.
+    * 
+    * time complexity: O(log(n)), one descent
+    */
+   public String computeIfPresent(int k, EntryFunction function)
+   {
+	   IAVLNode node = searchNode(k);
+	   if (node == null) return null;
+	   String info = function.apply(k, node.getValue());
+	   if (info == null)
+		   deleteAt(node);
+	   else {
+		   ((AVLNode) node).setValue(info);
+		   infoChanged(node);
+	   }
+	   return info;
+   }
+
+   /**
+    * public String merge(int k, String i, BinaryOperator<String> function)
+    *
+    * inserts the item (k, i) if k isn't in the tree, otherwise replaces the info of k
+    * with function(info, i) in place, or deletes the item if the function returns null.
+    * returns the new info of k, or null if it was deleted.
+    * 
+    * time complexity: O(log(n)), one descent
+    */
+   public String merge(int k, String i, BinaryOperator<String> function)
+   {
+	   IAVLNode position = insertPosition(k);
+	   if (position == null || position.getKey() != k) {
+		   insertAt(position, k, i);
+		   return i;
+	   }
+	   String info = function.apply(position.getValue(), i);
+	   if (info == null)
+		   deleteAt(position);
+	   else {
+		   ((AVLNode) position).setValue(info);
+		   infoChanged(position);
+	   }
+	   return info;
+   }
+
+   /**
+    * private void infoChanged(IAVLNode node)
+    *
+    * updates the aggregates from node up to the root after its info was replaced,
+    * if the tree has an aggregator
+    * 
+    * time complexity: O(log(n)), O(1) without an aggregator
+    */
+   private void infoChanged(IAVLNode node)
+   {
+	   if (this.aggregator != null)
+		   updateSizesfromNode(node);
+   }
+
+   /**
+    * public String min()
+    *
+    * Returns the info of the item with the smallest key in the tree,
+    * or null if the tree is empty
+    * 
+    * time complexity: O(1)
+    */
+   public String min()
+   {
+	   if (this.empty()) return null;
+	   return this.min.getValue();
+   }
+
+   /**
+    * public String max()
+    *
+    * Returns the info of the item with the largest key in the tree,
+    * or null if the tree is empty
+    * 
+    * time complexity: O(1)
+    */
+   public String max()
+   {
+	   if (this.empty()) return null;
+	   return this.max.getValue();   
+   }
+
+  /**
    * public int[] keysToArray()
    *
    * Returns a sorted array which contains all keys in the tree,
@@ -767,6 +1413,98 @@ public class AVLTree {
 	   return index;
   }  
 
+   /**
+    * public Spliterator.OfInt keySpliterator()
+    *
+    * Returns a spliterator over the keys of the tree in increasing order.
+    * it covers a range of ranks, and splits it in the middle, so both parts
+    * know their exact size and a parallel stream divides the work evenly.
+    * the tree must not be changed while the spliterator is used.
+    *
+    * time complexity: O(1), and O(log(n) + k) to traverse k keys
+    */
+   public Spliterator.OfInt keySpliterator()
+   {
+	   return new KeySpliterator(0, this.size());
+   }
+
+   /**
+    * public IntStream keyStream()
+    *
+    * Returns a sequential stream of the keys of the tree in increasing order,
+    * keyStream().parallel() traverses the tree on the common ForkJoinPool.
+    *
+    * time complexity: O(1), and O(n) to traverse the stream
+    */
+   public IntStream keyStream()
+   {
+	   return StreamSupport.intStream(this.keySpliterator(), false);
+   }
+
+   /**
+    * public int[] parallelKeysToArray()
+    *
+    * Returns the same as keysToArray, filled in parallel.
+    * the size of a subtree tells where its keys are in the array,
+    * so big subtrees are filled as independent tasks on the common ForkJoinPool.
+    *
+    * time complexity: O(n) work, O(n/p + log(n)) on p threads
+    */
+   public int[] parallelKeysToArray()
+   {
+	   int[] arr = new int[this.size()];
+	   if (!this.empty())
+		   ForkJoinPool.commonPool().invoke(new Traversal('K', this.getRoot(), 0, arr, null, null, null));
+	   return arr;
+   }
+
+   /**
+    * public String[] parallelInfoToArray()
+    *
+    * Returns the same as infoToArray, filled in parallel like parallelKeysToArray.
+    *
+    * time complexity: O(n) work, O(n/p + log(n)) on p threads
+    */
+   public String[] parallelInfoToArray()
+   {
+	   String[] arr = new String[this.size()];
+	   if (!this.empty())
+		   ForkJoinPool.commonPool().invoke(new Traversal('I', this.getRoot(), 0, null, arr, null, null));
+	   return arr;
+   }
+
+   /**
+    * public void parallelForEach(EntryConsumer consumer)
+    *
+    * calls consumer with every item of the tree, from several threads of
+    * the common ForkJoinPool and in no particular order.
+    * consumer must be thread safe, and the tree must not be changed meanwhile.
+    *
+    * time complexity: O(n) work, O(n/p + log(n)) on p threads
+    */
+   public void parallelForEach(EntryConsumer consumer)
+   {
+	   if (!this.empty())
+		   ForkJoinPool.commonPool().invoke(new Traversal('F', this.getRoot(), 0, null, null, consumer, null));
+   }
+
+   /**
+    * public void replaceAllValues(EntryFunction function)
+    *
+    * replaces the info of every item of the tree with function(key, info),
+    * in parallel on the common ForkJoinPool. the keys and the shape of the tree
+    * don't change, and the aggregates (if the tree has an aggregator) are
+    * recomputed bottom up by the same tasks.
+    * function must be thread safe.
+    *
+    * time complexity: O(n) work, O(n/p + log(n)) on p threads
+    */
+   public void replaceAllValues(EntryFunction function)
+   {
+	   if (!this.empty())
+		   ForkJoinPool.commonPool().invoke(new Traversal('R', this.getRoot(), 0, null, null, null, function));
+   }
+
    /**
     * public int size()
     *
@@ -782,6 +1520,227 @@ public class AVLTree {
 	   if(this.empty()) return 0;
 	   return this.getRoot().getSize();
    }
+
+   /**
+    * public int rank(int k)
+    *
+    * Returns the number of keys in the tree which are smaller than k
+    * (k doesn't have to be in the tree).
+    * goes down from the root, and counts the left subtree and the node
+    * every time it goes right.
+    *
+    * time complexity: O(log(n))
+    */
+   public int rank(int k)
+   {
+	   int rank = 0;
+	   IAVLNode node = this.getRoot();
+	   while (node != null && node.isRealNode()) {
+		   if (k <= node.getKey()) {
+			   if (k == node.getKey()) //the keys smaller than k are exactly the left subtree
+				   return rank + node.getLeft().getSize();
+			   node = node.getLeft();
+		   }
+		   else {
+			   rank += node.getLeft().getSize() + 1;
+			   node = node.getRight();
+		   }
+	   }
+	   return rank;
+   }
+
+   /**
+    * public IAVLNode select(int i)
+    *
+    * Returns the node with the i-th smallest key in the tree (starting from 0),
+    * or null if i < 0 or i >= size().
+    * select(rank(k)) is the node with key k, if k is in the tree.
+    *
+    * time complexity: O(log(n))
+    */
+   public IAVLNode select(int i)
+   {
+	   if (i < 0 || i >= this.size()) return null;
+	   IAVLNode node = this.getRoot();
+	   while (true) {
+		   int leftSize = node.getLeft().getSize();
+		   if (i < leftSize) //the i-th key is in the left subtree
+			   node = node.getLeft();
+		   else if (i == leftSize)
+			   return node;
+		   else { //skip the left subtree and the node
+			   i -= leftSize + 1;
+			   node = node.getRight();
+		   }
+	   }
+   }
+
+   /**
+    * public Cursor cursor()
+    *
+    * Returns a new cursor over the tree, which isn't positioned yet.
+    * a cursor can be moved and reused for any number of scans.
+    *
+    * time complexity: O(1)
+    */
+   public Cursor cursor()
+   {
+	   return new Cursor();
+   }
+
+   /**
+    * public int countRange(int lo, int hi)
+    *
+    * Returns the number of keys k in the tree with lo <= k <= hi,
+    * from the sizes of the subtrees (the range isn't walked).
+    *
+    * time complexity: O(log(n))
+    */
+   public int countRange(int lo, int hi)
+   {
+	   if (lo > hi) return 0;
+	   //the number of keys which are smaller than or equal to hi
+	   int atMostHi = (hi == Integer.MAX_VALUE) ? this.size() : this.rank(hi + 1);
+	   return atMostHi - this.rank(lo);
+   }
+
+   /**
+    * public void forEachInRange(int lo, int hi, EntryConsumer consumer)
+    *
+    * calls consumer with every item whose key k is lo <= k <= hi, in increasing key order.
+    * finds lo with treePosition and walks forward with successor,
+    * without copying the range.
+    *
+    * time complexity: O(log(n) + k) for k items in the range
+    */
+   public void forEachInRange(int lo, int hi, EntryConsumer consumer)
+   {
+	   if (lo > hi) return;
+	   IAVLNode node = ceilingEntry(lo);
+	   while (node != null && node.getKey() <= hi) {
+		   consumer.accept(node.getKey(), node.getValue());
+		   node = successor(node);
+	   }
+   }
+
+   /**
+    * public SubTree subTree(int lo, int hi)
+    *
+    * Returns a view of the items whose key k is lo <= k <= hi.
+    * the view isn't copied, every call on it reads the tree as it is at that time.
+    *
+    * time complexity: O(1)
+    */
+   public SubTree subTree(int lo, int hi)
+   {
+	   return new SubTree(lo, hi);
+   }
+
+   /**
+    * public <A> A aggregate()
+    *
+    * Returns the aggregate of all the items of the tree,
+    * or the identity of the aggregator if the tree is empty.
+    * precondition: the tree was created with an aggregator of A
+    *
+    * time complexity: O(1)
+    */
+   public <A> A aggregate()
+   {
+	   return aggregateOf(this.empty() ? this.virtualNode : this.getRoot());
+   }
+
+   /**
+    * public <A> A aggregate(int lo, int hi)
+    *
+    * Returns the aggregate of the items whose key k is lo <= k <= hi, in key order.
+    * goes down to the first node in the range, and from it along the paths to lo
+    * and to hi, combining the aggregates of the whole subtrees between them.
+    * precondition: the tree was created with an aggregator of A
+    *
+    * time complexity: O(log(n))
+    */
+   @SuppressWarnings("unchecked")
+   public <A> A aggregate(int lo, int hi)
+   {
+	   Aggregator<A> agg = (Aggregator<A>) this.aggregator;
+	   IAVLNode node = this.getRoot();
+	   while (node != null && node.isRealNode()) {
+		   if (node.getKey() < lo)
+			   node = node.getRight();
+		   else if (node.getKey() > hi)
+			   node = node.getLeft();
+		   else //the highest node in the range, the range is split around it
+			   return agg.combine(agg.combine(aggregateFrom(node.getLeft(), lo),
+					   agg.lift(node.getKey(), node.getValue())), aggregateTo(node.getRight(), hi));
+	   }
+	   return agg.identity();
+   }
+
+   /**
+    * private <A> A aggregateFrom(IAVLNode node, int lo)
+    *
+    * a recursive method that returns the aggregate of the keys in the subtree of node
+    * which are bigger than or equal to lo
+    *
+    * time complexity: O(log(n))
+    */
+   @SuppressWarnings("unchecked")
+   private <A> A aggregateFrom(IAVLNode node, int lo)
+   {
+	   Aggregator<A> agg = (Aggregator<A>) this.aggregator;
+	   if (!node.isRealNode()) return agg.identity();
+	   if (node.getKey() < lo) return aggregateFrom(node.getRight(), lo);
+	   return agg.combine(agg.combine(this.<A>aggregateFrom(node.getLeft(), lo),
+			   agg.lift(node.getKey(), node.getValue())), this.<A>aggregateOf(node.getRight()));
+   }
+
+   /**
+    * private <A> A aggregateTo(IAVLNode node, int hi)
+    *
+    * a recursive method that returns the aggregate of the keys in the subtree of node
+    * which are smaller than or equal to hi
+    *
+    * time complexity: O(log(n))
+    */
+   @SuppressWarnings("unchecked")
+   private <A> A aggregateTo(IAVLNode node, int hi)
+   {
+	   Aggregator<A> agg = (Aggregator<A>) this.aggregator;
+	   if (!node.isRealNode()) return agg.identity();
+	   if (node.getKey() > hi) return aggregateTo(node.getLeft(), hi);
+	   return agg.combine(agg.combine(this.<A>aggregateOf(node.getLeft()),
+			   agg.lift(node.getKey(), node.getValue())), this.<A>aggregateTo(node.getRight(), hi));
+   }
+
+   /**
+    * private <A> A aggregateOf(IAVLNode node)
+    *
+    * returns the aggregate kept in node, or the identity for the virtual node
+    *
+    * time complexity: O(1)
+    */
+   @SuppressWarnings("unchecked")
+   private <A> A aggregateOf(IAVLNode node)
+   {
+	   if (!node.isRealNode()) return ((Aggregator<A>) this.aggregator).identity();
+	   return (A) ((AggregateNode) node).aggregate;
+   }
+
+   /**
+    * private <A> A combineNode(IAVLNode node)
+    *
+    * returns the aggregate of the subtree of node, from the aggregates of its sons
+    *
+    * time complexity: O(1)
+    */
+   @SuppressWarnings("unchecked")
+   private <A> A combineNode(IAVLNode node)
+   {
+	   Aggregator<A> agg = (Aggregator<A>) this.aggregator;
+	   return agg.combine(agg.combine(this.<A>aggregateOf(node.getLeft()),
+			   agg.lift(node.getKey(), node.getValue())), this.<A>aggregateOf(node.getRight()));
+   }
    
    /**
     * public IAVLNode getRoot()
@@ -809,75 +1768,95 @@ public class AVLTree {
    {
 	   this.root = node;
    }
+
+   /**
+    * public void setMetrics(Metrics metrics)
+    *
+    * starts counting the work of the tree in metrics,
+    * or stops counting if metrics is null
+    * 
+    * time complexity: O(1)
+    */
+   public void setMetrics(Metrics metrics)
+   {
+	   this.metrics = metrics;
+	   if (metrics != null)
+		   metrics.recordShape(this.getRoot());
+   }
+
+   /**
+    * public Metrics getMetrics()
+    *
+    * returns the metrics of the tree, or null if they are disabled
+    * 
+    * time complexity: O(1)
+    */
+   public Metrics getMetrics()
+   {
+	   return this.metrics;
+   }
      /**
     * public AVLTree[] split(int x)
     *
     * splits the tree into 2 trees according to the key x. 
     * Returns an array [t1, t2] with two AVL trees. keys(t1) < x < keys(t2).
-	* precondition: search(x) != null (i.e. you can also assume that the tree is not empty)
+    * x doesn't have to be in the tree. if it is, its node is left detached
+    * (with no sons), so it can be passed to join.
+    * the nodes are moved to t1 and t2, so the tree is left empty.
     * postcondition: none
     * 
     * time complexity: O(log(n))
     */   
    public AVLTree[] split(int x)
    {
-	   IAVLNode splitNode = treePosition(x,this.getRoot());
-	   AVLTree t1 = new AVLTree();
-	   AVLTree t2 = new AVLTree();
-	   t1.setRoot(splitNode.getLeft());//initialize the smaller keys tree
-	   t2.setRoot(splitNode.getRight());//initialize the bigger keys tree
-	   IAVLNode []small = new IAVLNode[rank(this)];
-	   IAVLNode []large = new IAVLNode[rank(this)];
-	   
-	   //update the min and max values of the trees
-	   IAVLNode min1 = null, max1 = null, min2 = null, max2 = null;
-	   if (this.min.getKey() < x) {
-		   min1 = this.min;
-		   max1 = this.predecessor(splitNode);
-	   }
-	   if (this.max.getKey() > x) {
-		   min2 = this.successor(splitNode);
-		   max2 = this.max;
-	   }
-	   
-	   //store all the sub-trees according to their keys in the suitable array
-	   IAVLNode currNode = splitNode;
-	   int s = 0,l = 0;
-	   while (currNode.getParent() != null) {
-		   if (currNode.isRightSon()) {
-			   small[s] = currNode.getParent();
-			   s++;
-		   }
-		   else {
-			   large[l] = currNode.getParent();
-			   l++;
-		   }
-		   currNode = currNode.getParent();
+	   if (this.metrics == null)
+		   return splitTree(x);
+	   long allocated = Metrics.allocatedBytes();
+	   long start = System.nanoTime();
+	   AVLTree[] trees = splitTree(x);
+	   this.metrics.splitLatency.record(System.nanoTime() - start);
+	   Metrics.recordAllocation(this.metrics.splitAllocation, allocated);
+	   return trees;
+   }
+
+   /**
+    * private AVLTree[] splitTree(int x)
+    *
+    * splits the tree by the key x, without the metrics of split.
+    * returns the same as split.
+    * the nodes are split in place by splitNodes, so nothing is allocated but the two trees,
+    * and the min of t1 and the max of t2 are the min and max of the tree.
+    * 
+    * time complexity: O(log(n))
+    */
+   private AVLTree[] splitTree(int x)
+   {
+	   AVLTree t1 = new AVLTree(this.aggregator);
+	   AVLTree t2 = new AVLTree(this.aggregator);
+	   AVLTree []retVal = {t1,t2};
+	   if (this.empty()) return retVal;
+	   IAVLNode min = this.min, max = this.max;
+	   IAVLNode left = splitNodes(this.getRoot(), x);
+	   IAVLNode right = this.splitRight;
+	   IAVLNode found = this.splitFound;
+	   if (left.isRealNode()) {
+		   t1.setRoot(left);
+		   t1.min = min;
+		   t1.max = subtreeMax(left);
 	   }
-	   
-	   //create the smaller keys tree
-	   for (int i = 0; i < s; i++){
-		   AVLTree add = new AVLTree();
-		   add.setRoot(small[i].getLeft());
-		   add.min = min1;
-		   add.max = max1;
-		   t1.join(small[i],add);
+	   if (right.isRealNode()) {
+		   t2.setRoot(right);
+		   t2.min = subtreeMin(right);
+		   t2.max = max;
 	   }
-	   //create the bigger keys tree
-	   for (int i = 0; i < l; i++){
-		   AVLTree add = new AVLTree();
-		   add.setRoot(large[i].getRight());
-		   add.min = min2;
-		   add.max = max2;
-		   t2.join(large[i],add);
+	   if (found != null) {
+		   //detach the node of x from the subtrees it had
+		   found.setLeft(this.virtualNode);
+		   found.setRight(this.virtualNode);
+		   found.setParent(null);
+		   updateParent(found);
 	   }
-	   t1.min = min1;
-	   t1.max = max1;
-	   t2.min = min2;
-	   t2.max = max2;
-	   t1.getRoot().setParent(null);
-	   t2.getRoot().setParent(null);
-	   AVLTree []retVal = {t1,t2};
+	   this.setRootNode(this.virtualNode);
 	   return retVal;
    }
    /**
@@ -885,405 +1864,4880 @@ public class AVLTree {
     *
     * joins t and x with the tree. 	
     * Returns the complexity of the operation (|tree.rank - t.rank| + 1).
+    * x itself is linked into the tree, and the nodes of t are moved to the tree, so t is left empty.
+    * if x doesn't keep the aggregate of the tree's aggregator (it was created by a tree
+    * with another aggregator, or none), a new node with the key and info of x is linked instead.
 	* precondition: keys(x,t) < keys() or keys(x,t) > keys(). t/tree might be empty (rank = -1).
+	* t has the same aggregator as the tree (or both have none).
     * postcondition: none
     * 
     * time complexity: O(log(n))
     */   
    public int join(IAVLNode x, AVLTree t)
    {
-	   int complexity = Math.abs(rank(this)-rank(t)) + 1;
-	   
-	   //cases one of the trees is empty
-	   if (t.empty() || this.empty()) {
-		   if (t.empty()) {
-			   this.insert(x.getKey(), x.getValue());
-			   this.getRoot().setParent(null);
-		   }
-		   else if (this.empty()) {
-			   t.insert(x.getKey(), x.getValue());
-			   this.setRoot(t.getRoot());
-			   this.getRoot().setParent(null);
-			   this.min = t.min;
-			   this.max = t.max;
-		   }
-		   
-		   return complexity;
-	   }
-	   
-	   AVLTree large,small;
-	   int hd = heightDiff(this.getRoot(), t.getRoot());
-	   IAVLNode left, right, min, max;
-	   if (hd > 0) {
-		   large = this;
-		   small = t;
-		}
-	   else
-	   {
-		   //two trees has the same height
-		   if (hd == 0) {
-			   if (t.getRoot().getKey() < this.getRoot().getKey()) {
-				   min = t.min;
-				   max = this.max;
-				   left = t.getRoot();
-				   right = this.getRoot();
-				}
-			   else {
-				   min = this.min;
-				   max = t.max;
-				   left = this.getRoot();
-				   right = t.getRoot();
-				}
-			   x.setLeft(left);
-			   left.setParent(x);
-			   x.setRight(right);
-			   right.setParent(x);
-			   x.updateSize();
-			   x.setHeight(rank(t) + 1);
-			   this.setRoot(x);
-			   this.getRoot().setParent(null);
-			   this.min = min;
-			   this.max = max;
-			   
-			   return complexity;
-			}
-		   large = t;
-		   small = this;
-		}
-	   
-	   //trees have different heights
-	   x.setHeight(rank(small) + 1);
-	   IAVLNode currNode = large.getRoot(), parent = currNode;
-	   if (large.getRoot().getKey() < small.getRoot().getKey()) {
-		   min = large.min;
-		   max = small.max;
-		   //find the first right node which its height is smaller then the height of the shorter tree
-		   while (rank(small) < currNode.getHeight()) {
-			   parent = currNode;
-			   currNode = currNode.getRight();
-		   }
-		   parent.setRight(x);
-		   x.setParent(parent);
-		   left = currNode;
-		   right = small.getRoot();
-	   }
-	   else {
-		   min = small.min;
-		   max = large.max;
-		   //find the first left node which its height is smaller then the height of the shorter tree
-		   while (rank(small) < currNode.getHeight()) {
-			   parent = currNode;
-			   currNode = currNode.getLeft();
-		   }
-		   parent.setLeft(x);
-		   x.setParent(parent);
-		   left = small.getRoot();
-		   right = currNode;
-	   }
-	   x.setLeft(left);
-	   left.setParent(x);
-	   x.setRight(right);
-	   right.setParent(x);
-	   this.setRoot(large.getRoot());
-	   this.getRoot().setParent(null);
-	   this.rebalanceAfterInsert(x);
-	   this.min = min;
-	   this.max = max;
-	   
+	   if (this.metrics == null)
+		   return joinTree(x, t);
+	   long allocated = Metrics.allocatedBytes();
+	   long start = System.nanoTime();
+	   int complexity = joinTree(x, t);
+	   this.metrics.joinLatency.record(System.nanoTime() - start);
+	   Metrics.recordAllocation(this.metrics.joinAllocation, allocated);
+	   this.metrics.recordShape(this.getRoot());
 	   return complexity;
-	   
    }
 
-	/**
+   /**
+    * private int joinTree(IAVLNode x, AVLTree t)
+    *
+    * joins t and x with the tree, without the metrics of join.
+    * returns the same as join.
+    * the roots are joined by joinNodes, also when one of the trees is empty,
+    * and the min and max are taken from the two trees and x.
+    * 
+    * time complexity: O(|tree.rank - t.rank| + 1)
+    */
+   private int joinTree(IAVLNode x, AVLTree t)
+   {
+	   int complexity = Math.abs(rank(this)-rank(t)) + 1;
+	   if (!keepsAggregator(x))
+		   x = newNode(x.getKey(), x.getValue()); //x can't keep the aggregate of this tree
+	   //the tree whose keys are smaller than x, and the one whose keys are bigger
+	   boolean thisSmaller = this.empty()
+			   ? (!t.empty() && t.getRoot().getKey() > x.getKey())
+			   : this.getRoot().getKey() < x.getKey();
+	   AVLTree small = thisSmaller ? this : t;
+	   AVLTree large = thisSmaller ? t : this;
+	   IAVLNode min = small.empty() ? x : small.min;
+	   IAVLNode max = large.empty() ? x : large.max;
+	   IAVLNode left = small.empty() ? this.virtualNode : small.getRoot();
+	   IAVLNode right = large.empty() ? this.virtualNode : large.getRoot();
+	   t.setRootNode(t.virtualNode);
+	   IAVLNode root = joinNodes(left, x, right);
+	   root.setParent(null);
+	   this.setRoot(root);
+	   this.min = min;
+	   this.max = max;
+	   
+	   return complexity;
+	   
+   }
+
+   /**
+    * public int insertAll(int[] keys, String[] infos)
+    *
+    * inserts the items (keys[i], infos[i]) to the tree as one batch.
+    * the batch is sorted and merged into the tree with split and join,
+    * so the paths which are shared by many keys are rebalanced once.
+    * a key which already exists in the tree keeps its info, and if a key
+    * appears more than once in the batch, its first item is inserted (like insert).
+    * returns the number of items that were inserted.
+    * precondition: infos.length == keys.length
+    *
+    * time complexity: O(m*log(n/m + 1) + m*log(m)) for a batch of m keys
+    */
+   public int insertAll(int[] keys, String[] infos)
+   {
+	   //sort the batch by key (and by index for equal keys), without boxing
+	   long[] order = new long[keys.length];
+	   for (int i = 0; i < keys.length; i++)
+		   order[i] = ((long) keys[i] << 32) | i;
+	   Arrays.sort(order);
+	   int[] sortedKeys = new int[keys.length];
+	   String[] sortedInfos = new String[keys.length];
+	   int m = 0;
+	   for (int i = 0; i < order.length; i++) {
+		   int key = (int) (order[i] >> 32);
+		   if (m > 0 && sortedKeys[m - 1] == key) continue; //only the first item of a key is inserted
+		   sortedKeys[m] = key;
+		   sortedInfos[m] = infos[(int) order[i]];
+		   m++;
+	   }
+	   int sizeBefore = this.size();
+	   IAVLNode root = this.empty() ? this.virtualNode : this.getRoot();
+	   this.setRootNode(unionSorted(root, sortedKeys, sortedInfos, 0, m));
+	   return this.size() - sizeBefore;
+   }
+
+   /**
+    * public int deleteAll(int[] keys)
+    *
+    * deletes the items with the given keys from the tree as one batch.
+    * the batch is sorted and cut out of the tree with split and join,
+    * keys which are not in the tree are ignored.
+    * returns the number of items that were deleted.
+    *
+    * time complexity: O(m*log(n/m + 1) + m*log(m)) for a batch of m keys
+    */
+   public int deleteAll(int[] keys)
+   {
+	   if (this.empty()) return 0;
+	   int[] sortedKeys = keys.clone();
+	   Arrays.sort(sortedKeys);
+	   int sizeBefore = this.size();
+	   this.setRootNode(differenceSorted(this.getRoot(), sortedKeys, 0, sortedKeys.length));
+	   return sizeBefore - this.size();
+   }
+
+   /**
+    * private IAVLNode unionSorted(IAVLNode node, int[] keys, String[] infos, int from, int to)
+    *
+    * a recursive method that merges the sorted items in the indices [from, to)
+    * into the subtree of node, and returns the root of the merged subtree.
+    * the subtree is split by the middle key of the range, each side is merged
+    * with its half of the range, and the two are joined back by the middle item.
+    * precondition: node is a detached root (or virtual), keys[from..to) are distinct
+    *
+    * time complexity: O(m*log(n/m + 1)) for m = to - from
+    */
+   private IAVLNode unionSorted(IAVLNode node, int[] keys, String[] infos, int from, int to)
+   {
+	   if (from >= to) return node;
+	   if (!node.isRealNode()) return buildBalanced(keys, infos, from, to);
+	   int mid = (from + to) >>> 1;
+	   IAVLNode left = splitNodes(node, keys[mid]);
+	   IAVLNode right = this.splitRight;
+	   //an existing node keeps its info
+	   IAVLNode x = (this.splitFound != null) ? this.splitFound : newNode(keys[mid], infos[mid]);
+	   left = unionSorted(left, keys, infos, from, mid);
+	   right = unionSorted(right, keys, infos, mid + 1, to);
+	   return joinNodes(left, x, right);
+   }
+
+   /**
+    * private IAVLNode differenceSorted(IAVLNode node, int[] keys, int from, int to)
+    *
+    * a recursive method that removes the sorted keys in the indices [from, to)
+    * from the subtree of node, and returns the root of what is left.
+    * precondition: node is a detached root (or virtual)
+    *
+    * time complexity: O(m*log(n/m + 1)) for m = to - from
+    */
+   private IAVLNode differenceSorted(IAVLNode node, int[] keys, int from, int to)
+   {
+	   if (from >= to || !node.isRealNode()) return node;
+	   int mid = (from + to) >>> 1;
+	   IAVLNode left = splitNodes(node, keys[mid]);
+	   IAVLNode right = this.splitRight;
+	   left = differenceSorted(left, keys, from, mid);
+	   right = differenceSorted(right, keys, mid + 1, to);
+	   return concatNodes(left, right);
+   }
+
+   /**
+    * private IAVLNode concatNodes(IAVLNode left, IAVLNode right)
+    *
+    * joins the subtrees left and right without a middle node,
+    * by taking out the maximum of left and joining with it.
+    * returns the root of the joined subtree.
+    * precondition: left and right are detached roots (or virtual), keys(left) < keys(right)
+    *
+    * time complexity: O(log(n))
+    */
+   private IAVLNode concatNodes(IAVLNode left, IAVLNode right)
+   {
+	   if (!left.isRealNode()) return right;
+	   if (!right.isRealNode()) return left;
+	   IAVLNode x = subtreeMax(left);
+	   left = splitNodes(left, x.getKey());
+	   return joinNodes(left, x, right);
+   }
+
+   /**
+    * private IAVLNode joinNodes(IAVLNode left, IAVLNode x, IAVLNode right)
+    *
+    * joins the subtrees left and right with the node x between them,
+    * and returns the root of the joined subtree (the same way join does, on nodes).
+    * uses the root of this tree while rebalancing.
+    * precondition: keys(left) < x.key < keys(right), left/right might be virtual
+    *
+    * time complexity: O(|left.height - right.height| + 1)
+    */
+   private IAVLNode joinNodes(IAVLNode left, IAVLNode x, IAVLNode right)
+   {
+	   left.setParent(null);
+	   right.setParent(null);
+	   int hd = heightDiff(left, right);
+	   if (Math.abs(hd) <= 1) {
+		   //the heights are close enough, x is the new root
+		   x.connectSon(left, 'L');
+		   x.connectSon(right, 'R');
+		   x.setParent(null);
+		   updateParent(x);
+		   return x;
+	   }
+	   //go down the taller subtree, on the side of the shorter one,
+	   //to the first node which its height is at most the height of the shorter subtree
+	   IAVLNode large = (hd > 0) ? left : right;
+	   int smallHeight = (hd > 0) ? right.getHeight() : left.getHeight();
+	   char dir = (hd > 0) ? 'R' : 'L';
+	   IAVLNode parent = large, currNode = large;
+	   while (smallHeight < currNode.getHeight()) {
+		   parent = currNode;
+		   currNode = (dir == 'R') ? currNode.getRight() : currNode.getLeft();
+	   }
+	   parent.connectSon(x, dir);
+	   if (dir == 'R') {
+		   x.connectSon(currNode, 'L');
+		   x.connectSon(right, 'R');
+	   }
+	   else {
+		   x.connectSon(left, 'L');
+		   x.connectSon(currNode, 'R');
+	   }
+	   x.setHeight(smallHeight + 1);
+	   this.setRoot(large);
+	   this.rebalanceAfterInsert(x);
+	   return this.getRoot();
+   }
+
+   /**
+    * private IAVLNode splitNodes(IAVLNode node, int x)
+    *
+    * splits the subtree of node by the key x (which might not be in it),
+    * the same way split does, on nodes.
+    * returns the root of the keys smaller than x, and leaves the root of
+    * the keys bigger than x in splitRight and the node with key x (or null) in splitFound.
+    * uses the root of this tree while rebalancing.
+    * precondition: node is a detached root (or virtual)
+    *
+    * time complexity: O(log(n))
+    */
+   private IAVLNode splitNodes(IAVLNode node, int x)
+   {
+	   this.splitFound = null;
+	   if (!node.isRealNode()) {
+		   this.splitRight = node;
+		   return node;
+	   }
+	   IAVLNode splitNode = treePosition(x, node);
+	   IAVLNode parent = splitNode.getParent();
+	   IAVLNode son = splitNode;
+	   IAVLNode left = splitNode.getLeft();
+	   IAVLNode right = splitNode.getRight();
+	   if (splitNode.getKey() < x) //x isn't in the subtree, splitNode goes with the smaller keys
+		   left = joinNodes(left, splitNode, this.virtualNode);
+	   else if (splitNode.getKey() > x) //x isn't in the subtree, splitNode goes with the bigger keys
+		   right = joinNodes(this.virtualNode, splitNode, right);
+	   else
+		   this.splitFound = splitNode;
+	   //join every ancestor with its other subtree, to the side it belongs to
+	   while (parent != null) {
+		   IAVLNode next = parent.getParent();
+		   if (parent.getRight() == son)
+			   left = joinNodes(parent.getLeft(), parent, left);
+		   else
+			   right = joinNodes(right, parent, parent.getRight());
+		   son = parent;
+		   parent = next;
+	   }
+	   left.setParent(null);
+	   right.setParent(null);
+	   this.splitRight = right;
+	   return left;
+   }
+
+   /**
+    * private void setRootNode(IAVLNode node)
+    *
+    * makes node (which might be virtual) the detached root of the tree,
+    * and updates the min and max
+    *
+    * time complexity: O(log(n))
+    */
+   private void setRootNode(IAVLNode node)
+   {
+	   if (!node.isRealNode()) {
+		   this.setRoot(null);
+		   this.min = null;
+		   this.max = null;
+		   return;
+	   }
+	   node.setParent(null);
+	   this.setRoot(node);
+	   this.min = subtreeMin(node);
+	   this.max = subtreeMax(node);
+   }
+
+   /**
+    * public void writeTo(WritableByteChannel channel) throws IOException
+    *
+    * writes the tree to channel in a compact binary format:
+    * a header (magic number, version, number of items), and the items in key order,
+    * every key as a varint of its difference from the previous key
+    * and every info as a varint length (0 for null) followed by its UTF-8 bytes.
+    * the items are written from a walk with successor through one small buffer,
+    * without copying the tree to arrays.
+    *
+    * time complexity: O(n)
+    */
+   public void writeTo(WritableByteChannel channel) throws IOException
+   {
+	   SnapshotWriter writer = new SnapshotWriter(channel);
+	   writer.writeHeader(this.size());
+	   if (!this.empty())
+		   for (IAVLNode node = this.min; node != null; node = successor(node))
+			   writer.writeItem(node.getKey(), node.getValue());
+	   writer.flush();
+   }
+
+   /**
+    * public static AVLTree readFrom(ReadableByteChannel channel) throws IOException
+    *
+    * reads a tree which was written by writeTo from channel.
+    * the items come in key order, so the tree is built directly in its
+    * balanced shape (like fromSorted), without searching or rotating.
+    * throws IOException if the data isn't a tree snapshot, is cut short,
+    * or its keys aren't strictly increasing.
+    * the aggregator isn't saved in the snapshot, so the tree has none
+    * (see readFrom(channel, aggregator)).
+    *
+    * time complexity: O(n)
+    */
+   public static AVLTree readFrom(ReadableByteChannel channel) throws IOException
+   {
+	   return readFrom(channel, null);
+   }
+
+   /**
+    * public static AVLTree readFrom(ReadableByteChannel channel, Aggregator<?> aggregator) throws IOException
+    *
+    * reads a tree which was written by writeTo from channel, like readFrom(channel),
+    * into a tree which keeps the aggregates of aggregator (none if it is null).
+    *
+    * time complexity: O(n)
+    */
+   public static AVLTree readFrom(ReadableByteChannel channel, Aggregator<?> aggregator) throws IOException
+   {
+	   SnapshotReader reader = new SnapshotReader(channel);
+	   int n = reader.readHeader();
+	   AVLTree tree = new AVLTree(aggregator);
+	   if (n == 0) return tree;
+	   tree.setRootNode(tree.readBalanced(reader, n));
+	   return tree;
+   }
+
+   /**
+    * public void save(Path path) throws IOException
+    *
+    * writes the tree to the file path (replacing it) with writeTo
+    *
+    * time complexity: O(n)
+    */
+   public void save(Path path) throws IOException
+   {
+	   try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+			   StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+		   writeTo(channel);
+	   }
+   }
+
+   /**
+    * public static AVLTree load(Path path) throws IOException
+    *
+    * reads a tree which was saved to the file path with readFrom.
+    * the tree has no aggregator (see load(path, aggregator)).
+    *
+    * time complexity: O(n)
+    */
+   public static AVLTree load(Path path) throws IOException
+   {
+	   return load(path, null);
+   }
+
+   /**
+    * public static AVLTree load(Path path, Aggregator<?> aggregator) throws IOException
+    *
+    * reads a tree which was saved to the file path with readFrom(channel, aggregator)
+    *
+    * time complexity: O(n)
+    */
+   public static AVLTree load(Path path, Aggregator<?> aggregator) throws IOException
+   {
+	   try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+		   return readFrom(channel, aggregator);
+	   }
+   }
+
+   /**
+    * private IAVLNode readBalanced(SnapshotReader reader, int n)
+    *
+    * a recursive method that reads the next n items from reader
+    * and builds a perfectly balanced subtree of them, in order:
+    * the left half, the middle item and the right half. returns its root.
+    *
+    * time complexity: O(n)
+    */
+   private IAVLNode readBalanced(SnapshotReader reader, int n) throws IOException
+   {
+	   if (n == 0) return this.virtualNode;
+	   int leftSize = (n - 1) / 2;
+	   IAVLNode left = readBalanced(reader, leftSize);
+	   IAVLNode node = newNode(reader.readKey(), reader.readInfo());
+	   IAVLNode right = readBalanced(reader, n - 1 - leftSize);
+	   node.connectSon(left, 'L');
+	   node.connectSon(right, 'R');
+	   updateParent(node);
+	   return node;
+   }
+
+   /**
+    * public static AVLTree union(AVLTree t1, AVLTree t2)
+    *
+    * returns a tree with the items of both trees, a key which is
+    * in both trees keeps its info from t1.
+    * the nodes of t1 and t2 are moved to the new tree, so both are left empty.
+    * precondition: t1 and t2 have the same aggregator (or both have none)
+    * independent subtrees are merged in parallel on the common ForkJoinPool.
+    *
+    * time complexity: O(m*log(n/m + 1)) work for m <= n the sizes of the trees
+    */
+   public static AVLTree union(AVLTree t1, AVLTree t2)
+   {
+	   return setOperation('U', t1, t2);
+   }
+
+   /**
+    * public static AVLTree intersect(AVLTree t1, AVLTree t2)
+    *
+    * returns a tree with the items of t1 whose keys are also in t2.
+    * the nodes of t1 and t2 are moved to the new tree (or dropped), so both are left empty.
+    * precondition: t1 and t2 have the same aggregator (or both have none)
+    * independent subtrees are intersected in parallel on the common ForkJoinPool.
+    *
+    * time complexity: O(m*log(n/m + 1)) work for m <= n the sizes of the trees
+    */
+   public static AVLTree intersect(AVLTree t1, AVLTree t2)
+   {
+	   return setOperation('I', t1, t2);
+   }
+
+   /**
+    * public static AVLTree difference(AVLTree t1, AVLTree t2)
+    *
+    * returns a tree with the items of t1 whose keys are not in t2.
+    * the nodes of t1 and t2 are moved to the new tree (or dropped), so both are left empty.
+    * precondition: t1 and t2 have the same aggregator (or both have none)
+    * independent subtrees are handled in parallel on the common ForkJoinPool.
+    *
+    * time complexity: O(m*log(n/m + 1)) work for m <= n the sizes of the trees
+    */
+   public static AVLTree difference(AVLTree t1, AVLTree t2)
+   {
+	   return setOperation('D', t1, t2);
+   }
+
+   /**
+    * private static AVLTree setOperation(char op, AVLTree t1, AVLTree t2)
+    *
+    * runs the set operation op ('U' union, 'I' intersection, 'D' difference)
+    * on the roots of t1 and t2, and returns a new tree with the result.
+    * t1 and t2 are left empty.
+    *
+    * time complexity: O(m*log(n/m + 1)) work
+    */
+   private static AVLTree setOperation(char op, AVLTree t1, AVLTree t2)
+   {
+	   AVLTree result = new AVLTree(t1.aggregator);
+	   IAVLNode root1 = t1.empty() ? result.virtualNode : t1.getRoot();
+	   IAVLNode root2 = t2.empty() ? result.virtualNode : t2.getRoot();
+	   t1.setRootNode(result.virtualNode);
+	   t2.setRootNode(result.virtualNode);
+	   result.setRootNode(ForkJoinPool.commonPool().invoke(new SetOperation(op, root1, root2)));
+	   return result;
+   }
+
+   /**
+    * private IAVLNode setOperationNodes(char op, IAVLNode node1, IAVLNode node2)
+    *
+    * a recursive method that runs the set operation op on the subtrees of node1 and node2
+    * and returns the root of the result.
+    * the subtree of node1 is split by the key of node2, each side is combined
+    * with the matching son of node2, and the two results are joined back.
+    * precondition: node1 and node2 are detached roots (or virtual)
+    *
+    * time complexity: O(m*log(n/m + 1)) for m the size of the subtree of node2
+    */
+   private IAVLNode setOperationNodes(char op, IAVLNode node1, IAVLNode node2)
+   {
+	   if (!node1.isRealNode() || !node2.isRealNode()) return setOperationBase(op, node1, node2);
+	   IAVLNode left2 = node2.getLeft(), right2 = node2.getRight();
+	   left2.setParent(null);
+	   right2.setParent(null);
+	   IAVLNode left = splitNodes(node1, node2.getKey());
+	   IAVLNode right = this.splitRight;
+	   IAVLNode found = this.splitFound;
+	   left = setOperationNodes(op, left, left2);
+	   right = setOperationNodes(op, right, right2);
+	   return setOperationJoin(op, left, found, node2, right);
+   }
+
+   /**
+    * private static IAVLNode setOperationBase(char op, IAVLNode node1, IAVLNode node2)
+    *
+    * returns the result of the set operation op when one of the subtrees is empty
+    *
+    * time complexity: O(1)
+    */
+   private static IAVLNode setOperationBase(char op, IAVLNode node1, IAVLNode node2)
+   {
+	   if (op == 'U')
+		   return node1.isRealNode() ? node1 : node2;
+	   if (op == 'I')
+		   return node1.isRealNode() ? node2 : node1; //the empty one
+	   return node1;
+   }
+
+   /**
+    * private IAVLNode setOperationJoin(char op, IAVLNode left, IAVLNode found, IAVLNode node2, IAVLNode right)
+    *
+    * joins the results of the two sides of a set operation, with the node of
+    * their middle key if it belongs to the result:
+    * found (the node of t1 with that key, or null) or node2 (the node of t2).
+    *
+    * time complexity: O(log(n))
+    */
+   private IAVLNode setOperationJoin(char op, IAVLNode left, IAVLNode found, IAVLNode node2, IAVLNode right)
+   {
+	   IAVLNode x = null;
+	   if (op == 'U')
+		   x = (found != null) ? found : node2;
+	   else if (op == 'I')
+		   x = found;
+	   if (x == null)
+		   return concatNodes(left, right);
+	   return joinNodes(left, x, right);
+   }
+
+
+   /**
+    * private static final class Traversal
+    *
+    * a fork/join task of an in-order traversal of a subtree, whose first item
+    * has the index offset in the whole tree. op is 'K' (fill keys), 'I' (fill info),
+    * 'F' (call consumer) or 'R' (replace the info with function).
+    * big subtrees fork their left subtree and go on with the node and the right
+    * subtree, at the index offset + left size, so the tasks write disjoint slices.
+    * small subtrees are traversed sequentially.
+    */
+   private static final class Traversal extends RecursiveAction {
+	   private static final long serialVersionUID = 1L;
+	   private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+	   private final char op;
+	   private final IAVLNode node;
+	   private final int offset;
+	   private final int[] keys;
+	   private final String[] infos;
+	   private final EntryConsumer consumer;
+	   private final EntryFunction function;
+
+	   private Traversal(char op, IAVLNode node, int offset, int[] keys, String[] infos,
+			   EntryConsumer consumer, EntryFunction function) {
+		   this.op = op;
+		   this.node = node;
+		   this.offset = offset;
+		   this.keys = keys;
+		   this.infos = infos;
+		   this.consumer = consumer;
+		   this.function = function;
+	   }
+
+	   protected void compute() {
+		   IAVLNode node = this.node;
+		   if (node.getSize() <= SEQUENTIAL_THRESHOLD) {
+			   this.traverse(node, this.offset);
+			   return;
+		   }
+		   IAVLNode left = node.getLeft();
+		   Traversal leftTask = new Traversal(this.op, left, this.offset,
+				   this.keys, this.infos, this.consumer, this.function);
+		   leftTask.fork();
+		   int index = this.offset + left.getSize();
+		   this.visit(node, index);
+		   new Traversal(this.op, node.getRight(), index + 1,
+				   this.keys, this.infos, this.consumer, this.function).compute();
+		   leftTask.join();
+		   if (this.op == 'R')
+			   node.updateSize(); //the aggregates of both sons are recomputed
+	   }
+
+	   /**
+	    * a recursive method that traverses the subtree of node sequentially,
+	    * and returns the index after its last item
+	    */
+	   private int traverse(IAVLNode node, int index) {
+		   if (!node.isRealNode()) return index;
+		   index = this.traverse(node.getLeft(), index);
+		   this.visit(node, index);
+		   index = this.traverse(node.getRight(), index + 1);
+		   if (this.op == 'R')
+			   node.updateSize();
+		   return index;
+	   }
+
+	   private void visit(IAVLNode node, int index) {
+		   switch (this.op) {
+		   case 'K': this.keys[index] = node.getKey(); break;
+		   case 'I': this.infos[index] = node.getValue(); break;
+		   case 'F': this.consumer.accept(node.getKey(), node.getValue()); break;
+		   default: ((AVLNode) node).setValue(this.function.apply(node.getKey(), node.getValue()));
+		   }
+	   }
+   }
+   /**
+    * private static final class SetOperation
+    *
+    * a fork/join task of a set operation on two detached roots.
+    * big subtrees are split by the root of the second one and the two sides
+    * run as independent tasks, small ones run setOperationNodes sequentially.
+    * every task uses its own AVLTree for the rebalancing, since it changes the root.
+    */
+   private static final class SetOperation extends RecursiveTask<IAVLNode> {
+	   private static final long serialVersionUID = 1L;
+	   private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+	   private final char op;
+	   private final IAVLNode node1;
+	   private final IAVLNode node2;
+
+	   private SetOperation(char op, IAVLNode node1, IAVLNode node2) {
+		   this.op = op;
+		   this.node1 = node1;
+		   this.node2 = node2;
+	   }
+
+	   protected IAVLNode compute() {
+		   AVLTree context = new AVLTree();
+		   if (!this.node1.isRealNode() || !this.node2.isRealNode()
+				   || this.node1.getSize() + this.node2.getSize() <= SEQUENTIAL_THRESHOLD)
+			   return context.setOperationNodes(this.op, this.node1, this.node2);
+		   IAVLNode left2 = this.node2.getLeft(), right2 = this.node2.getRight();
+		   left2.setParent(null);
+		   right2.setParent(null);
+		   IAVLNode left1 = context.splitNodes(this.node1, this.node2.getKey());
+		   IAVLNode right1 = context.splitRight;
+		   IAVLNode found = context.splitFound;
+		   SetOperation leftTask = new SetOperation(this.op, left1, left2);
+		   leftTask.fork();
+		   IAVLNode right = new SetOperation(this.op, right1, right2).compute();
+		   IAVLNode left = leftTask.join();
+		   return context.setOperationJoin(this.op, left, found, this.node2, right);
+	   }
+   }
+
+   /**
+    * private static final class SnapshotWriter
+    *
+    * writes the binary format of writeTo to a channel through one buffer,
+    * which is written out whenever it fills up
+    */
+   private static final class SnapshotWriter {
+	   private final WritableByteChannel channel;
+	   private final ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_BUFFER_SIZE);
+	   //the keys are written as differences, the first one from Integer.MIN_VALUE so all are non negative
+	   private long prevKey = Integer.MIN_VALUE;
+
+	   private SnapshotWriter(WritableByteChannel channel) {
+		   this.channel = channel;
+	   }
+
+	   private void writeHeader(int n) throws IOException {
+		   this.buffer.putInt(SNAPSHOT_MAGIC);
+		   this.buffer.put(SNAPSHOT_VERSION);
+		   writeVarLong(n);
+	   }
+
+	   private void writeItem(int key, String info) throws IOException {
+		   writeVarLong(key - this.prevKey);
+		   this.prevKey = key;
+		   if (info == null) {
+			   writeVarLong(0);
+			   return;
+		   }
+		   byte[] bytes = info.getBytes(StandardCharsets.UTF_8);
+		   writeVarLong(bytes.length + 1L);
+		   if (bytes.length > this.buffer.remaining()) {
+			   flush();
+			   if (bytes.length > this.buffer.capacity()) { //too big for the buffer, written directly
+				   ByteBuffer direct = ByteBuffer.wrap(bytes);
+				   while (direct.hasRemaining())
+					   this.channel.write(direct);
+				   return;
+			   }
+		   }
+		   this.buffer.put(bytes);
+	   }
+
+	   private void writeVarLong(long value) throws IOException {
+		   if (this.buffer.remaining() < 10) flush();
+		   while ((value & ~0x7FL) != 0) {
+			   this.buffer.put((byte) ((value & 0x7F) | 0x80));
+			   value >>>= 7;
+		   }
+		   this.buffer.put((byte) value);
+	   }
+
+	   private void flush() throws IOException {
+		   this.buffer.flip();
+		   while (this.buffer.hasRemaining())
+			   this.channel.write(this.buffer);
+		   this.buffer.clear();
+	   }
+   }
+
+   /**
+    * private static final class SnapshotReader
+    *
+    * reads the binary format of writeTo from a channel through one buffer,
+    * which is refilled whenever it runs out
+    */
+   private static final class SnapshotReader {
+	   private final ReadableByteChannel channel;
+	   private final ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_BUFFER_SIZE);
+	   private long prevKey = Integer.MIN_VALUE;
+	   private boolean firstKey = true;
+
+	   private SnapshotReader(ReadableByteChannel channel) {
+		   this.channel = channel;
+		   this.buffer.limit(0); //nothing was read yet
+	   }
+
+	   /**
+	    * reads the header and returns the number of items
+	    */
+	   private int readHeader() throws IOException {
+		   require(5);
+		   if (this.buffer.getInt() != SNAPSHOT_MAGIC || this.buffer.get() != SNAPSHOT_VERSION)
+			   throw new IOException("not an AVLTree snapshot");
+		   long n = readVarLong();
+		   if (n < 0 || n > Integer.MAX_VALUE)
+			   throw new IOException("bad number of items " + n);
+		   return (int) n;
+	   }
+
+	   private int readKey() throws IOException {
+		   long delta = readVarLong();
+		   //the first key might be Integer.MIN_VALUE itself, the others are strictly increasing
+		   if (delta < 0 || (delta == 0 && !this.firstKey))
+			   throw new IOException("keys aren't strictly increasing");
+		   long key = this.prevKey + delta;
+		   if (key > Integer.MAX_VALUE)
+			   throw new IOException("bad key");
+		   this.prevKey = key;
+		   this.firstKey = false;
+		   return (int) key;
+	   }
+
+	   private String readInfo() throws IOException {
+		   long length = readVarLong() - 1;
+		   if (length < -1)
+			   throw new IOException("bad info length");
+		   if (length < 0) return null;
+		   if (length > Integer.MAX_VALUE)
+			   throw new IOException("bad info length " + length);
+		   if (length <= this.buffer.capacity()) {
+			   require((int) length);
+			   String info = new String(this.buffer.array(), this.buffer.position(), (int) length, StandardCharsets.UTF_8);
+			   this.buffer.position(this.buffer.position() + (int) length);
+			   return info;
+		   }
+		   //too big for the buffer, read it directly
+		   ByteBuffer direct = ByteBuffer.allocate((int) length);
+		   direct.put(this.buffer);
+		   while (direct.hasRemaining())
+			   if (this.channel.read(direct) < 0)
+				   throw new IOException("snapshot is cut short");
+		   return new String(direct.array(), StandardCharsets.UTF_8);
+	   }
+
+	   private long readVarLong() throws IOException {
+		   long value = 0;
+		   for (int shift = 0; shift < 64; shift += 7) {
+			   if (!this.buffer.hasRemaining()) require(1);
+			   byte b = this.buffer.get();
+			   value |= (long) (b & 0x7F) << shift;
+			   if (b >= 0) return value;
+		   }
+		   throw new IOException("bad varint");
+	   }
+
+	   /**
+	    * makes sure there are at least count bytes in the buffer
+	    * precondition: count <= the capacity of the buffer
+	    */
+	   private void require(int count) throws IOException {
+		   if (this.buffer.remaining() >= count) return;
+		   this.buffer.compact();
+		   while (this.buffer.position() < count)
+			   if (this.channel.read(this.buffer) < 0)
+				   throw new IOException("snapshot is cut short");
+		   this.buffer.flip();
+	   }
+   }
+
+	/**
 	   * public interface IAVLNode
 	   * ! Do not delete or modify this - otherwise all tests will fail !
 	   */
-	public interface IAVLNode{	
-		public int getKey(); //returns node's key (for virtuval node return -1)
-		public String getValue(); //returns node's value [info] (for virtuval node return null)
-		public void setLeft(IAVLNode node); //sets left child
-		public IAVLNode getLeft(); //returns left child (if there is no left child return null)
-		public void setRight(IAVLNode node); //sets right child
-		public IAVLNode getRight(); //returns right child (if there is no right child return null)
-		public void setParent(IAVLNode node); //sets parent
-		public IAVLNode getParent(); //returns the parent (if there is no parent return null)
-		public boolean isRealNode(); // Returns True if this is a non-virtual AVL node
-    	public void setHeight(int height); // sets the height of the node
-    	public int getHeight(); // Returns the height of the node (-1 for virtual nodes)
-	
-    	public int getSize();
-    	public void updateSize();
-    	public void updateHeight();
-    	public boolean isRightSon();
-    	public boolean[] whichSons();
-    	public void connectSon(IAVLNode son, char dir);
-	
-	}
+	public interface IAVLNode{	
+		public int getKey(); //returns node's key (for virtuval node return -1)
+		public String getValue(); //returns node's value [info] (for virtuval node return null)
+		public void setLeft(IAVLNode node); //sets left child
+		public IAVLNode getLeft(); //returns left child (if there is no left child return null)
+		public void setRight(IAVLNode node); //sets right child
+		public IAVLNode getRight(); //returns right child (if there is no right child return null)
+		public void setParent(IAVLNode node); //sets parent
+		public IAVLNode getParent(); //returns the parent (if there is no parent return null)
+		public boolean isRealNode(); // Returns True if this is a non-virtual AVL node
+    	public void setHeight(int height); // sets the height of the node
+    	public int getHeight(); // Returns the height of the node (-1 for virtual nodes)
+	
+    	public int getSize();
+    	public void updateSize();
+    	public void updateHeight();
+    	public boolean isRightSon();
+    	public boolean[] whichSons();
+    	public void connectSon(IAVLNode son, char dir);
+	
+	}
+
+	/**
+	   * public interface EntryConsumer
+	   *
+	   * receives the items of the tree (key and info) one by one,
+	   * without boxing the key
+	   */
+	public interface EntryConsumer {
+		public void accept(int key, String info);
+	}
+
+	/**
+	   * public interface EntryFunction
+	   *
+	   * computes a new info for an item of the tree from its key and info,
+	   * without boxing the key
+	   */
+	public interface EntryFunction {
+		public String apply(int key, String info);
+	}
+
+	/**
+	   * public interface IntervalConsumer
+	   *
+	   * receives the intervals of an IntervalTree (start, end and info) one by one,
+	   * without boxing
+	   */
+	public interface IntervalConsumer {
+		public void accept(int start, int end, String info);
+	}
+
+	/**
+	   * public interface Aggregator<A>
+	   *
+	   * an associative aggregate of the items of a subtree (a monoid),
+	   * like a sum, minimum or maximum of a number in the info, or a count of flagged items.
+	   * identity is the aggregate of no items, lift is the aggregate of one item,
+	   * and combine(a, b) is the aggregate of the items of a followed by the items of b.
+	   */
+	public interface Aggregator<A> {
+		public A identity();
+		public A lift(int key, String info);
+		public A combine(A left, A right);
+	}
+
+   /**
+   * public class AVLNode
+   *
+   * If you wish to implement classes other than AVLTree
+   * (for example AVLNode), do it in this file, not in 
+   * another file.
+   * This class can and must be modified.
+   * (It must implement IAVLNode)
+   */
+  public class AVLNode implements IAVLNode{
+	  private int key;
+	  private String info;
+	  private IAVLNode left;
+	  private IAVLNode right;
+	  private IAVLNode parent;
+	  private boolean isRealNode;
+	  private int height;
+	  private int size;
+	  
+	  /**
+	   * public AVLNode(int key, String info)
+	   *
+	   * constructor - creates real node
+	   * 
+	   * time complexity: O(1)
+	   *
+	   */
+	  public AVLNode(int key, String info) {
+		  this.isRealNode = true;
+		  this.key = key;
+		  this.info = info;
+		  //the leaves of the node are the tree's shared virtual node
+		  this.left = AVLTree.this.virtualNode;
+		  this.right = AVLTree.this.virtualNode;
+		  this.size = 1;
+		  this.height = 0;
+	  }
+	  
+	  /**
+	   * public AVLNode()
+	   *
+	   * constructor - creates virtual node
+	   * a virtual node is never modified, so one is shared by all the leaves of a tree
+	   * 
+	   * time complexity: O(1)
+	   *
+	   */
+	  public AVLNode() {
+		  this.isRealNode = false;
+		  this.key = -1;
+		  this.info = null;
+		  this.left = null;
+		  this.right = null;
+		  this.size = 0;
+		  this.height = -1;
+	  }
+	  
+	  /**
+	    * public int getKey()
+	    *
+	    * returns the key of the node, or null if the node is virtual
+	    * 
+	    * time complexity: O(1)
+	    */
+		public int getKey()
+		{
+			return this.key;
+		}
+		
+		/**
+		* public String getValue()
+		*
+		* returns the info of the node, or null if the node is virtual
+		* 
+		* time complexity: O(1)
+		*/
+		public String getValue()
+		{
+			return this.info;
+		}
+
+		/**
+		* public void setValue(String info)
+		*
+		* replaces the info of the node
+		* 
+		* time complexity: O(1)
+		*/
+		public void setValue(String info)
+		{
+			this.info = info;
+		}
+		
+		/**
+		* public void setLeft(IAVLNode node)
+		*
+		* updates the left son of the node
+		* 
+		* time complexity: O(1)
+		*/
+		public void setLeft(IAVLNode node)
+		{
+			if(isRealNode())
+				this.left = node; 
+		}
+		
+		/**
+		* public IAVLNode getLeft()
+		*
+		* returns the left son of the node
+		* 
+		* time complexity: O(1)
+		*/
+		public IAVLNode getLeft()
+		{
+			return this.left;
+		}
+		
+		/**
+		* public void setRight(IAVLNode node)
+		*
+		* updates the right son of the node
+		* 
+		* time complexity: O(1)
+		*/
+		public void setRight(IAVLNode node)
+		{
+			if(isRealNode())
+				this.right = node;
+		}
+		
+		/**
+		* public IAVLNode getRight()
+		*
+		* returns the right son of the node
+		* 
+		* time complexity: O(1)
+		*/
+		public IAVLNode getRight()
+		{
+			return this.right;
+		}
+		
+		/**
+		* public void setParent(IAVLNode node)
+		*
+		* updates the parent of the node
+		* (a virtual node is shared, so it has no parent)
+		* 
+		* time complexity: O(1)
+		*/
+		public void setParent(IAVLNode node)
+		{
+			if(isRealNode())
+				this.parent = node;
+		}
+		
+		/**
+		* public IAVLNode getParent()
+		*
+		* returns the parent of the node
+		* 
+		* time complexity: O(1)
+		*/
+		public IAVLNode getParent()
+		{
+			return this.parent;
+		}
+		
+		/**
+		* public boolean isRealNode()
+		*
+		* returns True if this is a non-virtual AVL node
+		* 
+		* time complexity: O(1)
+		*/
+		public boolean isRealNode()
+		{
+			return this.isRealNode;
+		}
+		
+		/**
+		* public void setHeight(int height)
+		*
+		* updates the height of the node
+		* 
+		* time complexity: O(1)
+		*/
+	    public void setHeight(int height)
+	    {
+	    	if(isRealNode())
+	    		this.height = height;
+	    }
+	    
+	    /**
+		* public void updateHeight()
+		*
+		* updates the height of the node according the node's sons' height
+		* 
+		* time complexity: O(1)
+		*/
+	    public void updateHeight() {
+	    	this.height = Math.max(this.getLeft().getHeight(), this.getRight().getHeight()) + 1;
+	    }
+	    
+	    /**
+		* public int getHeight()
+		*
+		* returns the height of the node 
+		* 
+		* time complexity: O(1)
+		*/
+	    public int getHeight()
+	    {
+	    	return this.height;
+	    }
+	    
+	    /**
+		* public int getSize()
+		*
+		* returns the size of the subtree that its root is the node 
+		* 
+		* time complexity: O(1)
+		*/
+	    public int getSize()
+	    {
+			return this.size;
+	    }
+	    
+	    /**
+		* public void updateSize()
+		*
+		* updates the size of the subtree that its root is the node according the node's sons' height
+		* 
+		* time complexity: O(1)
+		*/
+	    public void updateSize()
+	    {
+	    	this.size = this.getLeft().getSize() + this.getRight().getSize() + 1;		
+	    }
+	    
+	    /**
+		* public boolean isRightSon()
+		*
+		* returns True if this is a right son to its parent
+		* 
+		* time complexity: O(1)
+		*/
+		public boolean isRightSon() {
+			return this.getParent().getRight() == this;
+		}
+		
+		/**
+		* public boolean[] whichSons()
+		*
+		* returns array that contains if node has real left son and real right son
+		* 
+		* time complexity: O(1)
+		*/
+		public boolean[] whichSons() {
+			boolean hasLeft = this.getLeft().isRealNode();
+			boolean hasRight = this.getRight().isRealNode();
+			boolean[] sons = new boolean[] {hasLeft, hasRight};
+			return sons; 
+		}
+		
+		/**
+		* public void connectSon(IAVLNode son, char dir)
+		*
+		* gets son and direction and make this node its parent according to the direction
+		* 
+		* time complexity: O(1)
+		*/
+		public void connectSon(IAVLNode son, char dir) {
+			if (dir=='R')
+				this.setRight(son);
+			else
+				this.setLeft(son);
+			son.setParent(this);
+		}
+	    
+  }
+
+  /**
+   * private class AggregateNode
+   *
+   * A node of a tree which has an aggregator: an AVLNode which also keeps
+   * the aggregate of its subtree. only such trees create these nodes (see newNode),
+   * so the nodes of a tree without an aggregator don't pay for the field.
+   * the aggregate is updated in updateSize, so it is kept by every rotation,
+   * rebalance and join, along with the size and height.
+   */
+  private class AggregateNode extends AVLNode {
+	  private Object aggregate;
+
+	  /**
+	   * private AggregateNode(int key, String info)
+	   *
+	   * constructor - creates a real node, with the aggregate of its item
+	   *
+	   * time complexity: O(1)
+	   */
+	  private AggregateNode(int key, String info) {
+		  super(key, info);
+		  this.aggregate = AVLTree.this.aggregator.lift(key, info);
+	  }
+
+	  /**
+	   * public void updateSize()
+	   *
+	   * updates the size of the subtree like AVLNode, and its aggregate
+	   *
+	   * time complexity: O(1)
+	   */
+	  public void updateSize() {
+		  super.updateSize();
+		  this.aggregate = AVLTree.this.combineNode(this);
+	  }
+
+	  /**
+	   * private Aggregator<?> aggregator()
+	   *
+	   * returns the aggregator of the tree which created the node
+	   *
+	   * time complexity: O(1)
+	   */
+	  private Aggregator<?> aggregator() {
+		  return AVLTree.this.aggregator;
+	  }
+  }
+
+  /**
+   * private class IntervalNode
+   *
+   * A node of an IntervalTree: an AVLNode keyed by the start of an interval
+   * [key, end], which also keeps the maximal end of the intervals in its subtree.
+   * maxEnd is updated in updateSize, so it is kept by every rotation,
+   * rebalance and join, along with the size and height.
+   */
+  private class IntervalNode extends AVLNode {
+	  private final int end;
+	  private int maxEnd;
+
+	  /**
+	   * private IntervalNode(int start, int end, String info)
+	   *
+	   * constructor - creates a real node of the interval [start, end]
+	   *
+	   * time complexity: O(1)
+	   */
+	  private IntervalNode(int start, int end, String info) {
+		  super(start, info);
+		  this.end = end;
+		  this.maxEnd = end;
+	  }
+
+	  /**
+	   * public void updateSize()
+	   *
+	   * updates the size (and aggregate) of the subtree like AVLNode,
+	   * and the maximal end of the intervals in the subtree
+	   *
+	   * time complexity: O(1)
+	   */
+	  public void updateSize() {
+		  super.updateSize();
+		  this.maxEnd = Math.max(this.end, Math.max(maxEndOf(this.getLeft()), maxEndOf(this.getRight())));
+	  }
+  }
+
+  /**
+   * private static int maxEndOf(IAVLNode node)
+   *
+   * returns the maximal end of the intervals in the subtree of node,
+   * or Integer.MIN_VALUE if node is virtual
+   *
+   * time complexity: O(1)
+   */
+  private static int maxEndOf(IAVLNode node) {
+	  return node.isRealNode() ? ((IntervalNode) node).maxEnd : Integer.MIN_VALUE;
+  }
+
+  /**
+   * public class Cursor
+   *
+   * An in-order cursor over the tree.
+   * it walks with the parent pointers (successor/predecessor),
+   * so a scan doesn't copy the tree, doesn't recurse and allocates nothing per step.
+   * a cursor is either positioned on a node or not positioned (before
+   * the first move, or after it moved past the minimum or the maximum).
+   * the cursor must not be used after the tree is changed, other than by seek.
+   */
+  public class Cursor {
+	  private IAVLNode node;
+
+	  /**
+	   * private Cursor()
+	   *
+	   * constructor - creates a cursor which isn't positioned
+	   *
+	   * time complexity: O(1)
+	   */
+	  private Cursor() {
+		  this.node = null;
+	  }
+
+	  /**
+	   * public boolean isValid()
+	   *
+	   * returns true if and only if the cursor is positioned on a node
+	   *
+	   * time complexity: O(1)
+	   */
+	  public boolean isValid() {
+		  return this.node != null;
+	  }
+
+	  /**
+	   * public boolean next()
+	   *
+	   * moves the cursor to the next key (to the minimum, if it isn't positioned).
+	   * returns false if there is no such key, and then the cursor isn't positioned.
+	   *
+	   * time complexity: O(1) amortized, O(log(n)) worst case
+	   */
+	  public boolean next() {
+		  if (this.node == null)
+			  this.node = AVLTree.this.empty() ? null : AVLTree.this.min;
+		  else
+			  this.node = successor(this.node);
+		  return this.node != null;
+	  }
+
+	  /**
+	   * public boolean prev()
+	   *
+	   * moves the cursor to the previous key (to the maximum, if it isn't positioned).
+	   * returns false if there is no such key, and then the cursor isn't positioned.
+	   *
+	   * time complexity: O(1) amortized, O(log(n)) worst case
+	   */
+	  public boolean prev() {
+		  if (this.node == null)
+			  this.node = AVLTree.this.empty() ? null : AVLTree.this.max;
+		  else
+			  this.node = predecessor(this.node);
+		  return this.node != null;
+	  }
+
+	  /**
+	   * public boolean seek(int k)
+	   *
+	   * moves the cursor to the smallest key which is bigger than or equal to k.
+	   * returns false if there is no such key, and then the cursor isn't positioned.
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public boolean seek(int k) {
+		  this.node = ceilingEntry(k);
+		  return this.node != null;
+	  }
+
+	  /**
+	   * public int key()
+	   *
+	   * returns the key the cursor is on, or -1 if it isn't positioned
+	   *
+	   * time complexity: O(1)
+	   */
+	  public int key() {
+		  if (this.node == null) return -1;
+		  return this.node.getKey();
+	  }
+
+	  /**
+	   * public String value()
+	   *
+	   * returns the info of the key the cursor is on, or null if it isn't positioned
+	   *
+	   * time complexity: O(1)
+	   */
+	  public String value() {
+		  if (this.node == null) return null;
+		  return this.node.getValue();
+	  }
+  }
+
+  /**
+   * private class KeySpliterator
+   *
+   * A spliterator over the keys with ranks in [from, to).
+   * the first key is found with select, and the rest with successor.
+   * trySplit gives away the first half of the ranks, so the sizes stay exact.
+   */
+  private class KeySpliterator implements Spliterator.OfInt {
+	  private int from;
+	  private final int to;
+	  //the node with rank from, or null if it wasn't found yet
+	  private IAVLNode node;
+
+	  /**
+	   * private KeySpliterator(int from, int to)
+	   *
+	   * constructor - creates a spliterator over the ranks [from, to)
+	   *
+	   * time complexity: O(1)
+	   */
+	  private KeySpliterator(int from, int to) {
+		  this.from = from;
+		  this.to = to;
+	  }
+
+	  public boolean tryAdvance(IntConsumer action) {
+		  if (this.from >= this.to) return false;
+		  IAVLNode node = (this.node != null) ? this.node : AVLTree.this.select(this.from);
+		  action.accept(node.getKey());
+		  this.from++;
+		  this.node = (this.from < this.to) ? AVLTree.this.successor(node) : null;
+		  return true;
+	  }
+
+	  public void forEachRemaining(IntConsumer action) {
+		  if (this.from >= this.to) return;
+		  IAVLNode node = (this.node != null) ? this.node : AVLTree.this.select(this.from);
+		  for (int i = this.from; i < this.to; i++) {
+			  action.accept(node.getKey());
+			  if (i + 1 < this.to)
+				  node = AVLTree.this.successor(node);
+		  }
+		  this.from = this.to;
+		  this.node = null;
+	  }
+
+	  public Spliterator.OfInt trySplit() {
+		  int mid = (this.from + this.to) >>> 1;
+		  if (mid <= this.from) return null;
+		  KeySpliterator prefix = new KeySpliterator(this.from, mid);
+		  prefix.node = this.node;
+		  this.from = mid;
+		  this.node = null;
+		  return prefix;
+	  }
+
+	  public long estimateSize() {
+		  return this.to - this.from;
+	  }
+
+	  public int characteristics() {
+		  return ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | NONNULL;
+	  }
+
+	  public Comparator<? super Integer> getComparator() {
+		  return null; //the natural order of the keys
+	  }
+  }
+
+  /**
+   * public class SubTree
+   *
+   * A view of the items of the tree with keys in [lo, hi].
+   * it holds only the bounds, so it always shows the current items of the tree.
+   */
+  public class SubTree {
+	  private final int lo;
+	  private final int hi;
+
+	  /**
+	   * private SubTree(int lo, int hi)
+	   *
+	   * constructor - creates a view of the keys in [lo, hi]
+	   *
+	   * time complexity: O(1)
+	   */
+	  private SubTree(int lo, int hi) {
+		  this.lo = lo;
+		  this.hi = hi;
+	  }
+
+	  /**
+	   * public int size()
+	   *
+	   * returns the number of items in the view
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public int size() {
+		  return countRange(this.lo, this.hi);
+	  }
+
+	  /**
+	   * public boolean empty()
+	   *
+	   * returns true if and only if there are no items in the view
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public boolean empty() {
+		  return this.minNode() == null;
+	  }
+
+	  /**
+	   * public String search(int k)
+	   *
+	   * returns the info of the item with key k if it is in the view
+	   * otherwise, returns null
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public String search(int k) {
+		  if (k < this.lo || k > this.hi) return null;
+		  return AVLTree.this.search(k);
+	  }
+
+	  /**
+	   * public String min()
+	   *
+	   * returns the info of the item with the smallest key in the view,
+	   * or null if the view is empty
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public String min() {
+		  IAVLNode node = this.minNode();
+		  return node == null ? null : node.getValue();
+	  }
+
+	  /**
+	   * public String max()
+	   *
+	   * returns the info of the item with the largest key in the view,
+	   * or null if the view is empty
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public String max() {
+		  if (this.lo > this.hi) return null;
+		  IAVLNode node = floorEntry(this.hi);
+		  return (node == null || node.getKey() < this.lo) ? null : node.getValue();
+	  }
+
+	  /**
+	   * public int[] keysToArray()
+	   *
+	   * returns a sorted array of the keys in the view
+	   *
+	   * time complexity: O(log(n) + k) for k items in the view
+	   */
+	  public int[] keysToArray() {
+		  int[] arr = new int[this.size()];
+		  IAVLNode node = this.minNode();
+		  for (int i = 0; i < arr.length; i++) {
+			  arr[i] = node.getKey();
+			  node = successor(node);
+		  }
+		  return arr;
+	  }
+
+	  /**
+	   * public String[] infoToArray()
+	   *
+	   * returns an array of the infos in the view, sorted by their keys
+	   *
+	   * time complexity: O(log(n) + k) for k items in the view
+	   */
+	  public String[] infoToArray() {
+		  String[] arr = new String[this.size()];
+		  IAVLNode node = this.minNode();
+		  for (int i = 0; i < arr.length; i++) {
+			  arr[i] = node.getValue();
+			  node = successor(node);
+		  }
+		  return arr;
+	  }
+
+	  /**
+	   * public void forEach(EntryConsumer consumer)
+	   *
+	   * calls consumer with every item in the view, in increasing key order
+	   *
+	   * time complexity: O(log(n) + k) for k items in the view
+	   */
+	  public void forEach(EntryConsumer consumer) {
+		  forEachInRange(this.lo, this.hi, consumer);
+	  }
+
+	  /**
+	   * private IAVLNode minNode()
+	   *
+	   * returns the node with the smallest key in the view, or null if the view is empty
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  private IAVLNode minNode() {
+		  if (this.lo > this.hi) return null;
+		  IAVLNode node = ceilingEntry(this.lo);
+		  return (node == null || node.getKey() > this.hi) ? null : node;
+	  }
+  }
+
+  /**
+   * public interface MetricsMBean
+   *
+   * the attributes of Metrics which are exported over JMX,
+   * Metrics can be registered as a standard MBean as it is.
+   */
+  public interface MetricsMBean {
+	  public long getDescents();
+	  public double getMeanDescentDepth();
+	  public long getMaxDescentDepth();
+	  public long getSingleRotations();
+	  public long getDoubleRotations();
+	  public long getPromotions();
+	  public long getDemotions();
+	  public int getHeight();
+	  public double getHeightBound();
+	  public String getLatencySummary();
+	  public String getAllocationSummary();
+	  public void reset();
+  }
+
+  /**
+   * public static final class Metrics
+   *
+   * Counters of the work done by an AVLTree, enabled by tree.setMetrics(metrics).
+   * counts the descents of treePosition and their depths, the rotations by type,
+   * the promotions and demotions, keeps a latency histogram of every operation,
+   * a histogram of the bytes allocated by every update (insert, delete, split and join,
+   * search doesn't allocate), and the height of the tree after the last update against the AVL bound.
+   * the allocated bytes are read from the allocation counter of the current thread
+   * (com.sun.management.ThreadMXBean), so they include the allocations of the aggregator,
+   * and they aren't recorded on a JVM which doesn't support the counter or has it disabled.
+   * the counters are safe to update and read from many threads,
+   * and one Metrics might be shared by several trees.
+   * a tree without metrics (the default) only pays a null check per operation.
+   */
+  public static final class Metrics implements MetricsMBean {
+	  private static final com.sun.management.ThreadMXBean ALLOCATION_COUNTER = allocationCounter();
+	  private final LongAdder descents = new LongAdder();
+	  private final LongAdder descentDepth = new LongAdder();
+	  private final LongAccumulator maxDescentDepth = new LongAccumulator(Math::max, 0);
+	  private final LongAdder singleRotations = new LongAdder();
+	  private final LongAdder doubleRotations = new LongAdder();
+	  private final LongAdder promotions = new LongAdder();
+	  private final LongAdder demotions = new LongAdder();
+	  private final LatencyHistogram searchLatency = new LatencyHistogram();
+	  private final LatencyHistogram insertLatency = new LatencyHistogram();
+	  private final LatencyHistogram deleteLatency = new LatencyHistogram();
+	  private final LatencyHistogram splitLatency = new LatencyHistogram();
+	  private final LatencyHistogram joinLatency = new LatencyHistogram();
+	  private final LatencyHistogram insertAllocation = new LatencyHistogram();
+	  private final LatencyHistogram deleteAllocation = new LatencyHistogram();
+	  private final LatencyHistogram splitAllocation = new LatencyHistogram();
+	  private final LatencyHistogram joinAllocation = new LatencyHistogram();
+	  private volatile int height = -1;
+	  private volatile int size;
+
+	  /**
+	   * public long getDescents()
+	   *
+	   * returns the number of descents from the root (by treePosition)
+	   */
+	  public long getDescents() {
+		  return this.descents.sum();
+	  }
+
+	  /**
+	   * public double getMeanDescentDepth()
+	   *
+	   * returns the average number of nodes visited by a descent, or 0 if there were none
+	   */
+	  public double getMeanDescentDepth() {
+		  long count = this.descents.sum();
+		  return (count == 0) ? 0 : (double) this.descentDepth.sum() / count;
+	  }
+
+	  /**
+	   * public long getMaxDescentDepth()
+	   *
+	   * returns the largest number of nodes visited by a descent
+	   */
+	  public long getMaxDescentDepth() {
+		  return this.maxDescentDepth.get();
+	  }
+
+	  /**
+	   * public long getSingleRotations()
+	   *
+	   * returns the number of single rotations
+	   */
+	  public long getSingleRotations() {
+		  return this.singleRotations.sum();
+	  }
+
+	  /**
+	   * public long getDoubleRotations()
+	   *
+	   * returns the number of double rotations (each one is two rotations of nodes)
+	   */
+	  public long getDoubleRotations() {
+		  return this.doubleRotations.sum();
+	  }
+
+	  /**
+	   * public long getPromotions()
+	   *
+	   * returns the number of promotions while rebalancing after insert and join
+	   */
+	  public long getPromotions() {
+		  return this.promotions.sum();
+	  }
+
+	  /**
+	   * public long getDemotions()
+	   *
+	   * returns the number of demotions while rebalancing after delete
+	   */
+	  public long getDemotions() {
+		  return this.demotions.sum();
+	  }
+
+	  /**
+	   * public int getHeight()
+	   *
+	   * returns the height of the tree after the last insert or delete, -1 if it was empty
+	   */
+	  public int getHeight() {
+		  return this.height;
+	  }
+
+	  /**
+	   * public double getHeightBound()
+	   *
+	   * returns the largest height of an AVL tree with the size of the tree
+	   * after the last insert or delete, 1.4405*log2(n + 2) - 0.3277.
+	   * a height close to this bound means the keys keep the tree at its worst shape.
+	   */
+	  public double getHeightBound() {
+		  return 1.4405 * (Math.log(this.size + 2) / Math.log(2)) - 0.3277;
+	  }
+
+	  /**
+	   * public LatencyHistogram getSearchLatency()
+	   *
+	   * returns the histogram of the latencies of search, in nanoseconds
+	   */
+	  public LatencyHistogram getSearchLatency() {
+		  return this.searchLatency;
+	  }
+
+	  /**
+	   * public LatencyHistogram getInsertLatency()
+	   *
+	   * returns the histogram of the latencies of insert, in nanoseconds
+	   */
+	  public LatencyHistogram getInsertLatency() {
+		  return this.insertLatency;
+	  }
+
+	  /**
+	   * public LatencyHistogram getDeleteLatency()
+	   *
+	   * returns the histogram of the latencies of delete, in nanoseconds
+	   */
+	  public LatencyHistogram getDeleteLatency() {
+		  return this.deleteLatency;
+	  }
+
+	  /**
+	   * public LatencyHistogram getSplitLatency()
+	   *
+	   * returns the histogram of the latencies of split, in nanoseconds
+	   */
+	  public LatencyHistogram getSplitLatency() {
+		  return this.splitLatency;
+	  }
+
+	  /**
+	   * public LatencyHistogram getJoinLatency()
+	   *
+	   * returns the histogram of the latencies of join, in nanoseconds
+	   */
+	  public LatencyHistogram getJoinLatency() {
+		  return this.joinLatency;
+	  }
+
+	  /**
+	   * public LatencyHistogram getInsertAllocation()
+	   *
+	   * returns the histogram of the bytes allocated by insert
+	   */
+	  public LatencyHistogram getInsertAllocation() {
+		  return this.insertAllocation;
+	  }
+
+	  /**
+	   * public LatencyHistogram getDeleteAllocation()
+	   *
+	   * returns the histogram of the bytes allocated by delete
+	   */
+	  public LatencyHistogram getDeleteAllocation() {
+		  return this.deleteAllocation;
+	  }
+
+	  /**
+	   * public LatencyHistogram getSplitAllocation()
+	   *
+	   * returns the histogram of the bytes allocated by split
+	   */
+	  public LatencyHistogram getSplitAllocation() {
+		  return this.splitAllocation;
+	  }
+
+	  /**
+	   * public LatencyHistogram getJoinAllocation()
+	   *
+	   * returns the histogram of the bytes allocated by join
+	   */
+	  public LatencyHistogram getJoinAllocation() {
+		  return this.joinAllocation;
+	  }
+
+	  /**
+	   * public String getLatencySummary()
+	   *
+	   * returns the count, mean, median, 99th percentile and max latency
+	   * of every operation, one operation per line
+	   */
+	  public String getLatencySummary() {
+		  return "search " + this.searchLatency + "\n"
+				  + "insert " + this.insertLatency + "\n"
+				  + "delete " + this.deleteLatency + "\n"
+				  + "split " + this.splitLatency + "\n"
+				  + "join " + this.joinLatency;
+	  }
+
+	  /**
+	   * public String getAllocationSummary()
+	   *
+	   * returns the count, mean, median, 99th percentile and max of the bytes
+	   * allocated by every update, one operation per line
+	   */
+	  public String getAllocationSummary() {
+		  return "insert " + this.insertAllocation + "\n"
+				  + "delete " + this.deleteAllocation + "\n"
+				  + "split " + this.splitAllocation + "\n"
+				  + "join " + this.joinAllocation;
+	  }
+
+	  /**
+	   * public void reset()
+	   *
+	   * sets all the counters and histograms to zero
+	   */
+	  public void reset() {
+		  this.descents.reset();
+		  this.descentDepth.reset();
+		  this.maxDescentDepth.reset();
+		  this.singleRotations.reset();
+		  this.doubleRotations.reset();
+		  this.promotions.reset();
+		  this.demotions.reset();
+		  this.searchLatency.reset();
+		  this.insertLatency.reset();
+		  this.deleteLatency.reset();
+		  this.splitLatency.reset();
+		  this.joinLatency.reset();
+		  this.insertAllocation.reset();
+		  this.deleteAllocation.reset();
+		  this.splitAllocation.reset();
+		  this.joinAllocation.reset();
+	  }
+
+	  /**
+	   * public String toString()
+	   *
+	   * returns all the counters in one line, and the latencies and allocations in the lines after it
+	   */
+	  public String toString() {
+		  return "descents=" + getDescents() + " meanDepth=" + getMeanDescentDepth()
+				  + " maxDepth=" + getMaxDescentDepth() + " rotations=" + getSingleRotations()
+				  + " doubleRotations=" + getDoubleRotations() + " promotions=" + getPromotions()
+				  + " demotions=" + getDemotions() + " height=" + getHeight()
+				  + " heightBound=" + getHeightBound() + "\n" + getLatencySummary()
+				  + "\nallocated bytes:\n" + getAllocationSummary();
+	  }
+
+	  /**
+	   * private static com.sun.management.ThreadMXBean allocationCounter()
+	   *
+	   * returns the ThreadMXBean which counts the bytes allocated by a thread,
+	   * or null if the JVM doesn't have one
+	   */
+	  private static com.sun.management.ThreadMXBean allocationCounter() {
+		  java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		  if (!(threads instanceof com.sun.management.ThreadMXBean))
+			  return null;
+		  com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+		  return counter.isThreadAllocatedMemorySupported() ? counter : null;
+	  }
+
+	  /**
+	   * private static long allocatedBytes()
+	   *
+	   * returns the number of bytes the current thread allocated so far,
+	   * or -1 if the JVM doesn't count them
+	   */
+	  private static long allocatedBytes() {
+		  if (ALLOCATION_COUNTER == null || !ALLOCATION_COUNTER.isThreadAllocatedMemoryEnabled())
+			  return -1;
+		  return ALLOCATION_COUNTER.getCurrentThreadAllocatedBytes();
+	  }
+
+	  /**
+	   * private static void recordAllocation(LatencyHistogram histogram, long start)
+	   *
+	   * records the bytes the current thread allocated since allocatedBytes returned start,
+	   * nothing if the JVM doesn't count them (start is -1)
+	   */
+	  private static void recordAllocation(LatencyHistogram histogram, long start) {
+		  if (start >= 0)
+			  histogram.record(allocatedBytes() - start);
+	  }
+
+	  /**
+	   * private void recordDescent(int depth)
+	   *
+	   * counts a descent which visited depth nodes
+	   */
+	  private void recordDescent(int depth) {
+		  this.descents.increment();
+		  this.descentDepth.add(depth);
+		  this.maxDescentDepth.accumulate(depth);
+	  }
+
+	  /**
+	   * private void recordShape(IAVLNode root)
+	   *
+	   * keeps the height and size of a tree with the given root (null if empty)
+	   */
+	  private void recordShape(IAVLNode root) {
+		  boolean empty = (root == null || !root.isRealNode());
+		  this.height = empty ? -1 : root.getHeight();
+		  this.size = empty ? 0 : root.getSize();
+	  }
+  }
+
+  /**
+   * public static final class LatencyHistogram
+   *
+   * A histogram of non negative values (latencies in nanoseconds, or allocated bytes), in the style of HdrHistogram:
+   * every power of two is divided to 8 linear buckets, so a value is kept with
+   * 3 significant bits (an error of at most 12.5%) in a fixed array of counters.
+   * record is safe to call from many threads.
+   */
+  public static final class LatencyHistogram {
+	  private static final int SUB_BITS = 3;
+	  private static final int SUB_COUNT = 1 << SUB_BITS;
+	  private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BITS) * SUB_COUNT);
+	  private final LongAdder count = new LongAdder();
+	  private final LongAdder total = new LongAdder();
+	  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	  /**
+	   * public void record(long value)
+	   *
+	   * adds value to the histogram, negative values are counted as 0
+	   *
+	   * time complexity: O(1)
+	   */
+	  public void record(long value) {
+		  if (value < 0) value = 0;
+		  this.buckets.incrementAndGet(bucketOf(value));
+		  this.count.increment();
+		  this.total.add(value);
+		  this.max.accumulate(value);
+	  }
+
+	  /**
+	   * public long getCount()
+	   *
+	   * returns the number of recorded values
+	   */
+	  public long getCount() {
+		  return this.count.sum();
+	  }
+
+	  /**
+	   * public double getMean()
+	   *
+	   * returns the average of the recorded values, or 0 if there are none
+	   */
+	  public double getMean() {
+		  long n = this.count.sum();
+		  return (n == 0) ? 0 : (double) this.total.sum() / n;
+	  }
+
+	  /**
+	   * public long getMax()
+	   *
+	   * returns the largest recorded value (exactly), or 0 if there are none
+	   */
+	  public long getMax() {
+		  return this.max.get();
+	  }
+
+	  /**
+	   * public long getPercentile(double p)
+	   *
+	   * returns an upper bound for the value which p percent of the recorded values
+	   * are smaller than or equal to (the end of its bucket), or 0 if there are none
+	   * precondition: 0 <= p <= 100
+	   *
+	   * time complexity: O(number of buckets)
+	   */
+	  public long getPercentile(double p) {
+		  long n = 0;
+		  for (int i = 0; i < this.buckets.length(); i++)
+			  n += this.buckets.get(i);
+		  if (n == 0) return 0;
+		  long rank = Math.max(1, (long) Math.ceil(p / 100 * n));
+		  long seen = 0;
+		  for (int i = 0; i < this.buckets.length(); i++) {
+			  seen += this.buckets.get(i);
+			  if (seen >= rank)
+				  return Math.min(bucketEnd(i), getMax());
+		  }
+		  return getMax();
+	  }
+
+	  /**
+	   * public void reset()
+	   *
+	   * removes all the recorded values
+	   */
+	  public void reset() {
+		  for (int i = 0; i < this.buckets.length(); i++)
+			  this.buckets.set(i, 0);
+		  this.count.reset();
+		  this.total.reset();
+		  this.max.reset();
+	  }
+
+	  /**
+	   * public String toString()
+	   *
+	   * returns the count, mean, median, 99th percentile and max
+	   */
+	  public String toString() {
+		  return "count=" + getCount() + " mean=" + (long) getMean() + " p50=" + getPercentile(50)
+				  + " p99=" + getPercentile(99) + " max=" + getMax();
+	  }
+
+	  /**
+	   * private static int bucketOf(long value)
+	   *
+	   * returns the bucket of a non negative value: values below SUB_COUNT have
+	   * their own buckets, bigger ones are bucketed by their SUB_BITS+1 top bits
+	   *
+	   * time complexity: O(1)
+	   */
+	  private static int bucketOf(long value) {
+		  if (value < SUB_COUNT) return (int) value;
+		  int exp = 63 - Long.numberOfLeadingZeros(value); //the index of the top bit, at least SUB_BITS
+		  int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+		  return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+	  }
+
+	  /**
+	   * private static long bucketEnd(int bucket)
+	   *
+	   * returns the largest value in the bucket
+	   *
+	   * time complexity: O(1)
+	   */
+	  private static long bucketEnd(int bucket) {
+		  if (bucket < SUB_COUNT) return bucket;
+		  int exp = bucket / SUB_COUNT + SUB_BITS - 1;
+		  int sub = bucket % SUB_COUNT;
+		  long start = (long) (SUB_COUNT + sub) << (exp - SUB_BITS);
+		  return start + (1L << (exp - SUB_BITS)) - 1;
+	  }
+  }
+
+  /**
+   * public static class ConcurrentAVLTree
+   *
+   * A thread safe AVL Tree with distinct integer keys and info.
+   * the items are kept in an AVLTree which is guarded by a StampedLock:
+   * insert and delete take the write lock, and search, min, max and size
+   * read the tree without locking (an optimistic read) and check afterwards
+   * that no writer ran meanwhile. only if one did, they read again under the read lock.
+   * so readers do not block each other or write to shared memory.
+   */
+  public static class ConcurrentAVLTree {
+	  //more than the height of any AVL tree with int keys (1.44*log(2^32) < 47),
+	  //an optimistic descent which is longer than that met a rotation midway
+	  private static final int MAX_DESCENT = 64;
+	  private final AVLTree tree;
+	  private final StampedLock lock;
+
+	  /**
+	   * public ConcurrentAVLTree()
+	   *
+	   * constructor
+	   *
+	   * time complexity: O(1)
+	   */
+	  public ConcurrentAVLTree() {
+		  this.tree = new AVLTree();
+		  this.lock = new StampedLock();
+	  }
+
+	  /**
+	   * public String search(int k)
+	   *
+	   * returns the info of an item with key k if it exists in the tree
+	   * otherwise, returns null.
+	   * the search goes down the tree without locking, and the result is
+	   * used only if no writer changed the tree meanwhile.
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public String search(int k) {
+		  long stamp = this.lock.tryOptimisticRead();
+		  if (stamp != 0) {
+			  //the links might be changed by a writer while we read them,
+			  //so every node is checked for null and the descent is bounded
+			  IAVLNode node = this.tree.getRoot();
+			  String info = null;
+			  boolean finished = false;
+			  for (int steps = 0; steps < MAX_DESCENT; steps++) {
+				  if (node == null || !node.isRealNode()) { //k isn't a key in the tree
+					  finished = true;
+					  break;
+				  }
+				  int key = node.getKey();
+				  if (key == k) {
+					  info = node.getValue();
+					  finished = true;
+					  break;
+				  }
+				  node = (k < key) ? node.getLeft() : node.getRight();
+			  }
+			  if (finished && this.lock.validate(stamp))
+				  return info;
+		  }
+		  stamp = this.lock.readLock();
+		  try {
+			  return this.tree.search(k);
+		  } finally {
+			  this.lock.unlockRead(stamp);
+		  }
+	  }
+
+	  /**
+	   * public int insert(int k, String i)
+	   *
+	   * inserts an item with key k and info i to the tree, under the write lock.
+	   * returns the number of rebalancing operations, or -1 if k already exists (like AVLTree.insert)
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public int insert(int k, String i) {
+		  long stamp = this.lock.writeLock();
+		  try {
+			  return this.tree.insert(k, i);
+		  } finally {
+			  this.lock.unlockWrite(stamp);
+		  }
+	  }
+
+	  /**
+	   * public int delete(int k)
+	   *
+	   * deletes the item with key k from the tree, under the write lock.
+	   * returns the number of rebalancing operations, or -1 if k isn't in the tree (like AVLTree.delete)
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public int delete(int k) {
+		  long stamp = this.lock.writeLock();
+		  try {
+			  return this.tree.delete(k);
+		  } finally {
+			  this.lock.unlockWrite(stamp);
+		  }
+	  }
+
+	  /**
+	   * public String min()
+	   *
+	   * returns the info of the item with the smallest key in the tree,
+	   * or null if the tree is empty
+	   *
+	   * time complexity: O(1)
+	   */
+	  public String min() {
+		  long stamp = this.lock.tryOptimisticRead();
+		  if (stamp != 0) {
+			  IAVLNode root = this.tree.getRoot();
+			  IAVLNode node = this.tree.min;
+			  String info = (root == null || !root.isRealNode() || node == null) ? null : node.getValue();
+			  if (this.lock.validate(stamp))
+				  return info;
+		  }
+		  stamp = this.lock.readLock();
+		  try {
+			  return this.tree.min();
+		  } finally {
+			  this.lock.unlockRead(stamp);
+		  }
+	  }
+
+	  /**
+	   * public String max()
+	   *
+	   * returns the info of the item with the largest key in the tree,
+	   * or null if the tree is empty
+	   *
+	   * time complexity: O(1)
+	   */
+	  public String max() {
+		  long stamp = this.lock.tryOptimisticRead();
+		  if (stamp != 0) {
+			  IAVLNode root = this.tree.getRoot();
+			  IAVLNode node = this.tree.max;
+			  String info = (root == null || !root.isRealNode() || node == null) ? null : node.getValue();
+			  if (this.lock.validate(stamp))
+				  return info;
+		  }
+		  stamp = this.lock.readLock();
+		  try {
+			  return this.tree.max();
+		  } finally {
+			  this.lock.unlockRead(stamp);
+		  }
+	  }
+
+	  /**
+	   * public int size()
+	   *
+	   * returns the number of items in the tree
+	   *
+	   * time complexity: O(1)
+	   */
+	  public int size() {
+		  long stamp = this.lock.tryOptimisticRead();
+		  if (stamp != 0) {
+			  IAVLNode root = this.tree.getRoot();
+			  int size = (root == null || !root.isRealNode()) ? 0 : root.getSize();
+			  if (this.lock.validate(stamp))
+				  return size;
+		  }
+		  stamp = this.lock.readLock();
+		  try {
+			  return this.tree.size();
+		  } finally {
+			  this.lock.unlockRead(stamp);
+		  }
+	  }
+
+	  /**
+	   * public boolean empty()
+	   *
+	   * returns true if and only if the tree is empty
+	   *
+	   * time complexity: O(1)
+	   */
+	  public boolean empty() {
+		  return this.size() == 0;
+	  }
+
+	  /**
+	   * public Integer floorKey(int k)
+	   *
+	   * returns the largest key in the tree which is smaller than or equal to k,
+	   * or null if there is no such key
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public Integer floorKey(int k) {
+		  long stamp = this.lock.readLock();
+		  try {
+			  return this.tree.floorKey(k);
+		  } finally {
+			  this.lock.unlockRead(stamp);
+		  }
+	  }
+
+	  /**
+	   * public Integer ceilingKey(int k)
+	   *
+	   * returns the smallest key in the tree which is bigger than or equal to k,
+	   * or null if there is no such key
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public Integer ceilingKey(int k) {
+		  long stamp = this.lock.readLock();
+		  try {
+			  return this.tree.ceilingKey(k);
+		  } finally {
+			  this.lock.unlockRead(stamp);
+		  }
+	  }
+
+	  /**
+	   * public int[] keysToArray()
+	   *
+	   * returns a sorted array which contains all keys in the tree,
+	   * taken under the read lock so it is a consistent snapshot
+	   *
+	   * time complexity: O(n)
+	   */
+	  public int[] keysToArray() {
+		  long stamp = this.lock.readLock();
+		  try {
+			  return this.tree.keysToArray();
+		  } finally {
+			  this.lock.unlockRead(stamp);
+		  }
+	  }
+
+	  /**
+	   * public String[] infoToArray()
+	   *
+	   * returns an array which contains all info in the tree, sorted by their keys,
+	   * taken under the read lock so it is a consistent snapshot
+	   *
+	   * time complexity: O(n)
+	   */
+	  public String[] infoToArray() {
+		  long stamp = this.lock.readLock();
+		  try {
+			  return this.tree.infoToArray();
+		  } finally {
+			  this.lock.unlockRead(stamp);
+		  }
+	  }
+  }
+
+  /**
+   * public static class PersistentAVLTree
+   *
+   * An immutable AVL Tree with distinct integer keys and info.
+   * insert and delete do not change the tree, they return a new tree which
+   * copies only the nodes on the path to the changed key (path copying)
+   * and shares all the other nodes with the old one.
+   * so every tree is a consistent snapshot that can be kept or passed
+   * to other threads for free, and read without any locking.
+   * the nodes have no parent pointers, since a shared node has many parents.
+   */
+  public static class PersistentAVLTree {
+	  private final PersistentNode root; //null if the tree is empty
+
+	  /**
+	   * public PersistentAVLTree()
+	   *
+	   * constructor - creates an empty tree
+	   *
+	   * time complexity: O(1)
+	   */
+	  public PersistentAVLTree() {
+		  this(null);
+	  }
+
+	  /**
+	   * private PersistentAVLTree(PersistentNode root)
+	   *
+	   * constructor - creates a tree with the given root
+	   *
+	   * time complexity: O(1)
+	   */
+	  private PersistentAVLTree(PersistentNode root) {
+		  this.root = root;
+	  }
+
+	  /**
+	   * public boolean empty()
+	   *
+	   * returns true if and only if the tree is empty
+	   *
+	   * time complexity: O(1)
+	   */
+	  public boolean empty() {
+		  return this.root == null;
+	  }
+
+	  /**
+	   * public int size()
+	   *
+	   * returns the number of items in the tree
+	   *
+	   * time complexity: O(1)
+	   */
+	  public int size() {
+		  return size(this.root);
+	  }
+
+	  /**
+	   * public String search(int k)
+	   *
+	   * returns the info of an item with key k if it exists in the tree
+	   * otherwise, returns null
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public String search(int k) {
+		  PersistentNode node = this.root;
+		  while (node != null) {
+			  if (k == node.key)
+				  return node.info;
+			  node = (k < node.key) ? node.left : node.right;
+		  }
+		  return null; //k isn't a key in the tree
+	  }
+
+	  /**
+	   * public PersistentAVLTree insert(int k, String i)
+	   *
+	   * returns a tree with the items of this tree and the item (k, i).
+	   * if k already exists in the tree, returns this tree.
+	   * this tree isn't changed.
+	   *
+	   * time complexity: O(log(n)) time and new nodes
+	   */
+	  public PersistentAVLTree insert(int k, String i) {
+		  PersistentNode newRoot = insertNode(this.root, k, i);
+		  return (newRoot == this.root) ? this : new PersistentAVLTree(newRoot);
+	  }
+
+	  /**
+	   * public PersistentAVLTree delete(int k)
+	   *
+	   * returns a tree with the items of this tree without the item with key k.
+	   * if k isn't in the tree, returns this tree.
+	   * this tree isn't changed.
+	   *
+	   * time complexity: O(log(n)) time and new nodes
+	   */
+	  public PersistentAVLTree delete(int k) {
+		  PersistentNode newRoot = deleteNode(this.root, k);
+		  return (newRoot == this.root) ? this : new PersistentAVLTree(newRoot);
+	  }
+
+	  /**
+	   * public String min()
+	   *
+	   * returns the info of the item with the smallest key in the tree,
+	   * or null if the tree is empty
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public String min() {
+		  if (this.root == null) return null;
+		  PersistentNode node = this.root;
+		  while (node.left != null)
+			  node = node.left;
+		  return node.info;
+	  }
+
+	  /**
+	   * public String max()
+	   *
+	   * returns the info of the item with the largest key in the tree,
+	   * or null if the tree is empty
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public String max() {
+		  if (this.root == null) return null;
+		  PersistentNode node = this.root;
+		  while (node.right != null)
+			  node = node.right;
+		  return node.info;
+	  }
+
+	  /**
+	   * public int[] keysToArray()
+	   *
+	   * returns a sorted array which contains all keys in the tree,
+	   * or an empty array if the tree is empty
+	   *
+	   * time complexity: O(n)
+	   */
+	  public int[] keysToArray() {
+		  int[] arr = new int[this.size()];
+		  keysToArrayRec(this.root, arr, 0);
+		  return arr;
+	  }
+
+	  /**
+	   * public String[] infoToArray()
+	   *
+	   * returns an array which contains all info in the tree, sorted by their keys,
+	   * or an empty array if the tree is empty
+	   *
+	   * time complexity: O(n)
+	   */
+	  public String[] infoToArray() {
+		  String[] arr = new String[this.size()];
+		  infoToArrayRec(this.root, arr, 0);
+		  return arr;
+	  }
+
+	  /**
+	   * private static int keysToArrayRec(PersistentNode node, int[] arr, int index)
+	   *
+	   * a recursive method that fills arr with the keys of the subtree of node
+	   * from the given index, and returns the next free index
+	   *
+	   * time complexity: O(n)
+	   */
+	  private static int keysToArrayRec(PersistentNode node, int[] arr, int index) {
+		  if (node == null) return index;
+		  index = keysToArrayRec(node.left, arr, index);
+		  arr[index++] = node.key;
+		  return keysToArrayRec(node.right, arr, index);
+	  }
+
+	  /**
+	   * private static int infoToArrayRec(PersistentNode node, String[] arr, int index)
+	   *
+	   * a recursive method that fills arr with the info of the subtree of node
+	   * from the given index, and returns the next free index
+	   *
+	   * time complexity: O(n)
+	   */
+	  private static int infoToArrayRec(PersistentNode node, String[] arr, int index) {
+		  if (node == null) return index;
+		  index = infoToArrayRec(node.left, arr, index);
+		  arr[index++] = node.info;
+		  return infoToArrayRec(node.right, arr, index);
+	  }
+
+	  /**
+	   * private static PersistentNode insertNode(PersistentNode node, int k, String i)
+	   *
+	   * a recursive method that returns the root of a copy of the subtree of node
+	   * with the item (k, i), or node itself if k is already in it.
+	   * only the nodes on the path to k are copied.
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  private static PersistentNode insertNode(PersistentNode node, int k, String i) {
+		  if (node == null) return new PersistentNode(k, i, null, null);
+		  if (k == node.key) return node;
+		  if (k < node.key) {
+			  PersistentNode left = insertNode(node.left, k, i);
+			  return (left == node.left) ? node : balance(node.key, node.info, left, node.right);
+		  }
+		  PersistentNode right = insertNode(node.right, k, i);
+		  return (right == node.right) ? node : balance(node.key, node.info, node.left, right);
+	  }
+
+	  /**
+	   * private static PersistentNode deleteNode(PersistentNode node, int k)
+	   *
+	   * a recursive method that returns the root of a copy of the subtree of node
+	   * without the item with key k, or node itself if k isn't in it.
+	   * a node with two sons is replaced by a copy of its successor.
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  private static PersistentNode deleteNode(PersistentNode node, int k) {
+		  if (node == null) return null;
+		  if (k < node.key) {
+			  PersistentNode left = deleteNode(node.left, k);
+			  return (left == node.left) ? node : balance(node.key, node.info, left, node.right);
+		  }
+		  if (k > node.key) {
+			  PersistentNode right = deleteNode(node.right, k);
+			  return (right == node.right) ? node : balance(node.key, node.info, node.left, right);
+		  }
+		  if (node.left == null) return node.right;
+		  if (node.right == null) return node.left;
+		  PersistentNode successor = node.right;
+		  while (successor.left != null)
+			  successor = successor.left;
+		  return balance(successor.key, successor.info, node.left, deleteMin(node.right));
+	  }
+
+	  /**
+	   * private static PersistentNode deleteMin(PersistentNode node)
+	   *
+	   * returns the root of a copy of the subtree of node without its smallest key
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  private static PersistentNode deleteMin(PersistentNode node) {
+		  if (node.left == null) return node.right;
+		  return balance(node.key, node.info, deleteMin(node.left), node.right);
+	  }
+
+	  /**
+	   * private static PersistentNode balance(int key, String info, PersistentNode left, PersistentNode right)
+	   *
+	   * returns a new node with the given item and sons, after one single or double
+	   * rotation if the heights of the sons differ by 2.
+	   * the rotated nodes are new as well, the sons are never changed.
+	   * precondition: the heights of left and right differ by at most 2
+	   *
+	   * time complexity: O(1)
+	   */
+	  private static PersistentNode balance(int key, String info, PersistentNode left, PersistentNode right) {
+		  int hd = height(left) - height(right);
+		  if (hd > 1) {
+			  if (height(left.left) >= height(left.right)) //single rotation to the right
+				  return new PersistentNode(left.key, left.info, left.left,
+						  new PersistentNode(key, info, left.right, right));
+			  PersistentNode lr = left.right; //double rotation, left then right
+			  return new PersistentNode(lr.key, lr.info,
+					  new PersistentNode(left.key, left.info, left.left, lr.left),
+					  new PersistentNode(key, info, lr.right, right));
+		  }
+		  if (hd < -1) {
+			  if (height(right.right) >= height(right.left)) //single rotation to the left
+				  return new PersistentNode(right.key, right.info,
+						  new PersistentNode(key, info, left, right.left), right.right);
+			  PersistentNode rl = right.left; //double rotation, right then left
+			  return new PersistentNode(rl.key, rl.info,
+					  new PersistentNode(key, info, left, rl.left),
+					  new PersistentNode(right.key, right.info, rl.right, right.right));
+		  }
+		  return new PersistentNode(key, info, left, right);
+	  }
+
+	  /**
+	   * private static int height(PersistentNode node)
+	   *
+	   * returns the height of node, -1 for an empty subtree
+	   *
+	   * time complexity: O(1)
+	   */
+	  private static int height(PersistentNode node) {
+		  return (node == null) ? -1 : node.height;
+	  }
+
+	  /**
+	   * private static int size(PersistentNode node)
+	   *
+	   * returns the size of the subtree of node, 0 for an empty subtree
+	   *
+	   * time complexity: O(1)
+	   */
+	  private static int size(PersistentNode node) {
+		  return (node == null) ? 0 : node.size;
+	  }
+
+	  /**
+	   * private static final class PersistentNode
+	   *
+	   * an immutable node, its height and size are computed once from its sons
+	   */
+	  private static final class PersistentNode {
+		  private final int key;
+		  private final String info;
+		  private final PersistentNode left;
+		  private final PersistentNode right;
+		  private final int height;
+		  private final int size;
+
+		  private PersistentNode(int key, String info, PersistentNode left, PersistentNode right) {
+			  this.key = key;
+			  this.info = info;
+			  this.left = left;
+			  this.right = right;
+			  this.height = Math.max(height(left), height(right)) + 1;
+			  this.size = size(left) + size(right) + 1;
+		  }
+	  }
+  }
+
+  /**
+   * public static class ShardedAVLTree
+   *
+   * A thread safe map with distinct integer keys and info, which is split by key
+   * ranges into a fixed number of AVLTrees (shards), each with its own lock.
+   * the shard i holds the keys in [bounds[i], bounds[i+1]), so writers of
+   * different ranges run in parallel, and the shards in order are the sorted items.
+   * when a shard grows to more than twice the average, the items are spread
+   * evenly over the shards again with split and join, and the bounds move.
+   * every operation holds the layout lock for reading while it works on a shard,
+   * and moving keys between shards holds it for writing.
+   */
+  public static class ShardedAVLTree {
+	  //shards smaller than this are never rebalanced
+	  private static final int MIN_REBALANCE_SIZE = 1 << 10;
+	  private final AVLTree[] shards;
+	  private final ReentrantLock[] shardLocks;
+	  private final int[] bounds; //bounds[i] is the smallest key of shard i, bounds[0] = Integer.MIN_VALUE
+	  private final ReentrantReadWriteLock layoutLock;
+	  private final AtomicInteger size;
+
+	  /**
+	   * public ShardedAVLTree(int shardCount)
+	   *
+	   * constructor - creates an empty map with shardCount shards,
+	   * which split the range of int into equal ranges
+	   * precondition: shardCount >= 1
+	   *
+	   * time complexity: O(shardCount)
+	   */
+	  public ShardedAVLTree(int shardCount) {
+		  this.shards = new AVLTree[shardCount];
+		  this.shardLocks = new ReentrantLock[shardCount];
+		  this.bounds = new int[shardCount];
+		  long range = (1L << 32) / shardCount;
+		  for (int i = 0; i < shardCount; i++) {
+			  this.shards[i] = new AVLTree();
+			  this.shardLocks[i] = new ReentrantLock();
+			  this.bounds[i] = (int) (Integer.MIN_VALUE + i * range);
+		  }
+		  this.layoutLock = new ReentrantReadWriteLock();
+		  this.size = new AtomicInteger();
+	  }
+
+	  /**
+	   * public String search(int k)
+	   *
+	   * returns the info of an item with key k if it exists in the map
+	   * otherwise, returns null
+	   *
+	   * time complexity: O(log(n) + log(shardCount))
+	   */
+	  public String search(int k) {
+		  this.layoutLock.readLock().lock();
+		  try {
+			  int i = shardOf(k);
+			  this.shardLocks[i].lock();
+			  try {
+				  return this.shards[i].search(k);
+			  } finally {
+				  this.shardLocks[i].unlock();
+			  }
+		  } finally {
+			  this.layoutLock.readLock().unlock();
+		  }
+	  }
+
+	  /**
+	   * public int insert(int k, String i)
+	   *
+	   * inserts an item with key k and info i to the shard of k.
+	   * returns the number of rebalancing operations in the shard, or -1 if k already exists.
+	   * if the shard became too big (see isOversized), the items of all the shards
+	   * are spread evenly again by rebalanceShards afterwards.
+	   * a spread costs O(shardCount*log(n)), and about n/shardCount inserts pass
+	   * between two spreads, so it adds O(shardCount^2*log(n)/n) amortized per insert.
+	   *
+	   * time complexity: O(log(n) + log(shardCount)) amortized
+	   */
+	  public int insert(int k, String i) {
+		  int result, shard, shardSize;
+		  this.layoutLock.readLock().lock();
+		  try {
+			  shard = shardOf(k);
+			  this.shardLocks[shard].lock();
+			  try {
+				  result = this.shards[shard].insert(k, i);
+				  shardSize = this.shards[shard].size();
+			  } finally {
+				  this.shardLocks[shard].unlock();
+			  }
+		  } finally {
+			  this.layoutLock.readLock().unlock();
+		  }
+		  if (result != -1) {
+			  this.size.incrementAndGet();
+			  if (isOversized(shardSize))
+				  rebalanceShards(shard);
+		  }
+		  return result;
+	  }
+
+	  /**
+	   * public int delete(int k)
+	   *
+	   * deletes the item with key k from the shard of k.
+	   * returns the number of rebalancing operations in the shard, or -1 if k isn't in the map.
+	   *
+	   * time complexity: O(log(n) + log(shardCount))
+	   */
+	  public int delete(int k) {
+		  int result;
+		  this.layoutLock.readLock().lock();
+		  try {
+			  int i = shardOf(k);
+			  this.shardLocks[i].lock();
+			  try {
+				  result = this.shards[i].delete(k);
+			  } finally {
+				  this.shardLocks[i].unlock();
+			  }
+		  } finally {
+			  this.layoutLock.readLock().unlock();
+		  }
+		  if (result != -1)
+			  this.size.decrementAndGet();
+		  return result;
+	  }
+
+	  /**
+	   * public int size()
+	   *
+	   * returns the number of items in the map
+	   *
+	   * time complexity: O(1)
+	   */
+	  public int size() {
+		  return this.size.get();
+	  }
+
+	  /**
+	   * public boolean empty()
+	   *
+	   * returns true if and only if the map is empty
+	   *
+	   * time complexity: O(1)
+	   */
+	  public boolean empty() {
+		  return this.size() == 0;
+	  }
+
+	  /**
+	   * public String min()
+	   *
+	   * returns the info of the item with the smallest key in the map,
+	   * or null if the map is empty.
+	   * the shards are checked from the first one, until one isn't empty.
+	   *
+	   * time complexity: O(shardCount)
+	   */
+	  public String min() {
+		  this.layoutLock.readLock().lock();
+		  try {
+			  for (int i = 0; i < this.shards.length; i++) {
+				  this.shardLocks[i].lock();
+				  try {
+					  if (!this.shards[i].empty())
+						  return this.shards[i].min();
+				  } finally {
+					  this.shardLocks[i].unlock();
+				  }
+			  }
+			  return null;
+		  } finally {
+			  this.layoutLock.readLock().unlock();
+		  }
+	  }
+
+	  /**
+	   * public String max()
+	   *
+	   * returns the info of the item with the largest key in the map,
+	   * or null if the map is empty.
+	   * the shards are checked from the last one, until one isn't empty.
+	   *
+	   * time complexity: O(shardCount)
+	   */
+	  public String max() {
+		  this.layoutLock.readLock().lock();
+		  try {
+			  for (int i = this.shards.length - 1; i >= 0; i--) {
+				  this.shardLocks[i].lock();
+				  try {
+					  if (!this.shards[i].empty())
+						  return this.shards[i].max();
+				  } finally {
+					  this.shardLocks[i].unlock();
+				  }
+			  }
+			  return null;
+		  } finally {
+			  this.layoutLock.readLock().unlock();
+		  }
+	  }
+
+	  /**
+	   * public int[] keysToArray()
+	   *
+	   * returns a sorted array which contains all keys in the map.
+	   * all the shards are locked (in order) while they are copied,
+	   * so the array is a consistent snapshot.
+	   *
+	   * time complexity: O(n + shardCount)
+	   */
+	  public int[] keysToArray() {
+		  this.layoutLock.readLock().lock();
+		  lockAllShards();
+		  try {
+			  int total = 0;
+			  for (AVLTree shard : this.shards)
+				  total += shard.size();
+			  int[] arr = new int[total];
+			  int index = 0;
+			  for (AVLTree shard : this.shards)
+				  if (!shard.empty())
+					  index = shard.keysToArrayRec(shard.getRoot(), arr, index);
+			  return arr;
+		  } finally {
+			  unlockAllShards();
+			  this.layoutLock.readLock().unlock();
+		  }
+	  }
+
+	  /**
+	   * public String[] infoToArray()
+	   *
+	   * returns an array which contains all info in the map, sorted by their keys.
+	   * all the shards are locked (in order) while they are copied,
+	   * so the array is a consistent snapshot.
+	   *
+	   * time complexity: O(n + shardCount)
+	   */
+	  public String[] infoToArray() {
+		  this.layoutLock.readLock().lock();
+		  lockAllShards();
+		  try {
+			  int total = 0;
+			  for (AVLTree shard : this.shards)
+				  total += shard.size();
+			  String[] arr = new String[total];
+			  int index = 0;
+			  for (AVLTree shard : this.shards)
+				  if (!shard.empty())
+					  index = shard.infoToArrayRec(shard.getRoot(), arr, index);
+			  return arr;
+		  } finally {
+			  unlockAllShards();
+			  this.layoutLock.readLock().unlock();
+		  }
+	  }
+
+	  /**
+	   * private int shardOf(int k)
+	   *
+	   * returns the index of the shard which holds the key k,
+	   * the last shard with bounds[i] <= k (binary search).
+	   * precondition: the layout lock is held
+	   *
+	   * time complexity: O(log(shardCount))
+	   */
+	  private int shardOf(int k) {
+		  int lo = 0, hi = this.bounds.length - 1;
+		  while (lo < hi) {
+			  int mid = (lo + hi + 1) >>> 1;
+			  if (this.bounds[mid] <= k)
+				  lo = mid;
+			  else
+				  hi = mid - 1;
+		  }
+		  return lo;
+	  }
+
+	  /**
+	   * private boolean isOversized(int shardSize)
+	   *
+	   * returns true if a shard of the given size is more than twice the average
+	   * shard size (and not a small one), so the items should be spread evenly
+	   * over all the shards again by rebalanceShards
+	   *
+	   * time complexity: O(1)
+	   */
+	  private boolean isOversized(int shardSize) {
+		  if (this.shards.length == 1 || shardSize < Math.max(MIN_REBALANCE_SIZE, this.shards.length)) return false;
+		  return shardSize > 2 * (this.size.get() / this.shards.length + 1);
+	  }
+
+	  /**
+	   * private void rebalanceShards(int shard)
+	   *
+	   * spreads the items evenly over all the shards, if shard is still too big:
+	   * concatenates all the shards to one tree, finds the first key of every
+	   * shard by its rank, and splits the tree by these keys, which become the new bounds.
+	   * after that a shard becomes too big only after about n/shardCount more inserts,
+	   * so the cost is small per insert.
+	   * holds the layout lock for writing, so no other operation runs meanwhile.
+	   *
+	   * time complexity: O(shardCount*log(n))
+	   */
+	  private void rebalanceShards(int shard) {
+		  this.layoutLock.writeLock().lock();
+		  try {
+			  if (!isOversized(this.shards[shard].size())) return; //another writer already rebalanced
+			  int count = this.shards.length;
+			  AVLTree context = new AVLTree();
+			  IAVLNode all = context.virtualNode;
+			  for (AVLTree tree : this.shards) {
+				  if (!tree.empty())
+					  all = context.concatNodes(all, tree.getRoot());
+				  tree.setRootNode(context.virtualNode);
+			  }
+			  context.setRootNode(all);
+			  int total = context.size();
+			  //the first node of every shard but the first one
+			  IAVLNode[] firsts = new IAVLNode[count];
+			  for (int i = 1; i < count; i++)
+				  firsts[i] = context.select((int) ((long) i * total / count));
+			  IAVLNode rest = all;
+			  for (int i = 1; i < count; i++) {
+				  IAVLNode left = context.splitNodes(rest, firsts[i].getKey());
+				  rest = context.joinNodes(context.virtualNode, firsts[i], context.splitRight);
+				  this.shards[i - 1].setRootNode(left);
+				  this.bounds[i] = firsts[i].getKey();
+			  }
+			  this.shards[count - 1].setRootNode(rest);
+		  } finally {
+			  this.layoutLock.writeLock().unlock();
+		  }
+	  }
+
+	  /**
+	   * private void lockAllShards()
+	   *
+	   * locks all the shards, in increasing order
+	   *
+	   * time complexity: O(shardCount)
+	   */
+	  private void lockAllShards() {
+		  for (ReentrantLock lock : this.shardLocks)
+			  lock.lock();
+	  }
+
+	  /**
+	   * private void unlockAllShards()
+	   *
+	   * unlocks all the shards
+	   *
+	   * time complexity: O(shardCount)
+	   */
+	  private void unlockAllShards() {
+		  for (ReentrantLock lock : this.shardLocks)
+			  lock.unlock();
+	  }
+  }
+
+  /**
+   * abstract static class RecursiveAVLTree<N extends RecursiveNode<N, V>, V>
+   *
+   * The shared part of GenericAVLTree and LongAVLTree: an AVL Tree whose nodes
+   * have no parent pointers and no virtual leaves (a missing son is null),
+   * insert and delete go down recursively and rebalance on the way back up.
+   * the keys are kept by the subclasses in their own type (so long keys aren't boxed):
+   * the key of the current insert/delete is kept by the subclass, and compareKey
+   * compares it to the key of a node.
+   */
+  abstract static class RecursiveAVLTree<N extends RecursiveNode<N, V>, V> {
+	  N root;
+	  int size;
+	  //the state of the current insert/delete, set on the way down and read on the way up
+	  private boolean changed;
+	  private int rotations;
+
+	  /**
+	   * abstract int compareKey(N node)
+	   *
+	   * compares the key of the current insert/delete to the key of node:
+	   * returns a negative number, zero or a positive number if it is smaller, equal or bigger
+	   */
+	  abstract int compareKey(N node);
+
+	  /**
+	   * abstract N newNode(V info)
+	   *
+	   * returns a new node with the key of the current insert and info
+	   */
+	  abstract N newNode(V info);
+
+	  /**
+	   * public boolean empty()
+	   *
+	   * returns true if and only if the tree is empty
+	   *
+	   * time complexity: O(1)
+	   */
+	  public boolean empty() {
+		  return this.root == null;
+	  }
+
+	  /**
+	   * public int size()
+	   *
+	   * returns the number of items in the tree
+	   *
+	   * time complexity: O(1)
+	   */
+	  public int size() {
+		  return this.size;
+	  }
+
+	  /**
+	   * public V min()
+	   *
+	   * returns the info of the item with the smallest key in the tree,
+	   * or null if the tree is empty
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public V min() {
+		  if (this.root == null) return null;
+		  N node = this.root;
+		  while (node.left != null)
+			  node = node.left;
+		  return node.info;
+	  }
+
+	  /**
+	   * public V max()
+	   *
+	   * returns the info of the item with the largest key in the tree,
+	   * or null if the tree is empty
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public V max() {
+		  if (this.root == null) return null;
+		  N node = this.root;
+		  while (node.right != null)
+			  node = node.right;
+		  return node.info;
+	  }
+
+	  /**
+	   * public Object[] infoToArray()
+	   *
+	   * returns an array which contains all info in the tree, sorted by their keys,
+	   * or an empty array if the tree is empty
+	   *
+	   * time complexity: O(n)
+	   */
+	  public Object[] infoToArray() {
+		  Object[] arr = new Object[this.size];
+		  infoToArrayRec(this.root, arr, 0);
+		  return arr;
+	  }
+
+	  /**
+	   * private int infoToArrayRec(N node, Object[] arr, int index)
+	   *
+	   * a recursive method that fills arr with the info of the subtree of node
+	   * from the given index, and returns the next free index
+	   *
+	   * time complexity: O(n)
+	   */
+	  private int infoToArrayRec(N node, Object[] arr, int index) {
+		  if (node == null) return index;
+		  index = infoToArrayRec(node.left, arr, index);
+		  arr[index++] = node.info;
+		  return infoToArrayRec(node.right, arr, index);
+	  }
+
+	  /**
+	   * int insertKey(V i)
+	   *
+	   * inserts an item with the key of the current insert and info i to the tree.
+	   * returns the number of rotations (a double rotation is counted as 2),
+	   * or -1 if an item with that key already exists in the tree.
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  int insertKey(V i) {
+		  this.changed = false;
+		  this.rotations = 0;
+		  this.root = insertNode(this.root, i);
+		  return this.changed ? this.rotations : -1;
+	  }
+
+	  /**
+	   * int deleteKey()
+	   *
+	   * deletes the item with the key of the current delete from the tree, if it is there.
+	   * returns the number of rotations (a double rotation is counted as 2),
+	   * or -1 if there was no such item.
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  int deleteKey() {
+		  this.changed = false;
+		  this.rotations = 0;
+		  this.root = deleteNode(this.root);
+		  return this.changed ? this.rotations : -1;
+	  }
+
+	  /**
+	   * private N insertNode(N node, V i)
+	   *
+	   * a recursive method that inserts the current key with info i to the subtree of node,
+	   * and returns the root of the subtree after rebalancing.
+	   * sets changed if the item was inserted.
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  private N insertNode(N node, V i) {
+		  if (node == null) {
+			  this.changed = true;
+			  this.size++;
+			  return newNode(i);
+		  }
+		  int c = compareKey(node);
+		  if (c == 0) return node; //the key already exists
+		  if (c < 0)
+			  node.left = insertNode(node.left, i);
+		  else
+			  node.right = insertNode(node.right, i);
+		  return this.changed ? balance(node) : node;
+	  }
+
+	  /**
+	   * private N deleteNode(N node)
+	   *
+	   * a recursive method that deletes the item with the current key from the subtree of node,
+	   * and returns the root of the subtree after rebalancing.
+	   * a node with two sons is replaced by its successor.
+	   * sets changed if the item was deleted.
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  private N deleteNode(N node) {
+		  if (node == null) return null; //the key isn't in the tree
+		  int c = compareKey(node);
+		  if (c < 0)
+			  node.left = deleteNode(node.left);
+		  else if (c > 0)
+			  node.right = deleteNode(node.right);
+		  else {
+			  this.changed = true;
+			  this.size--;
+			  if (node.left == null) return node.right;
+			  if (node.right == null) return node.left;
+			  N successor = node.right;
+			  while (successor.left != null)
+				  successor = successor.left;
+			  successor.right = deleteMin(node.right);
+			  successor.left = node.left;
+			  return balance(successor);
+		  }
+		  return this.changed ? balance(node) : node;
+	  }
+
+	  /**
+	   * private N deleteMin(N node)
+	   *
+	   * removes the node with the smallest key from the subtree of node,
+	   * and returns the root of the subtree after rebalancing
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  private N deleteMin(N node) {
+		  if (node.left == null) return node.right;
+		  node.left = deleteMin(node.left);
+		  return balance(node);
+	  }
+
+	  /**
+	   * private N balance(N node)
+	   *
+	   * updates the height of node, and rotates its subtree (single or double rotation)
+	   * if the heights of its sons differ by 2. returns the root of the subtree.
+	   *
+	   * time complexity: O(1)
+	   */
+	  private N balance(N node) {
+		  int hd = height(node.left) - height(node.right);
+		  if (hd > 1) {
+			  if (height(node.left.left) < height(node.left.right)) //double rotation
+				  node.left = rotate(node.left, 'L');
+			  return rotate(node, 'R');
+		  }
+		  if (hd < -1) {
+			  if (height(node.right.right) < height(node.right.left)) //double rotation
+				  node.right = rotate(node.right, 'R');
+			  return rotate(node, 'L');
+		  }
+		  node.updateHeight();
+		  return node;
+	  }
+
+	  /**
+	   * private N rotate(N oldSubRoot, char dir)
+	   *
+	   * rotates the subtree of oldSubRoot to the direction dir,
+	   * and returns the new root of the subtree
+	   *
+	   * time complexity: O(1)
+	   */
+	  private N rotate(N oldSubRoot, char dir) {
+		  N newSubRoot;
+		  if (dir == 'R') {
+			  newSubRoot = oldSubRoot.left;
+			  oldSubRoot.left = newSubRoot.right;
+			  newSubRoot.right = oldSubRoot;
+		  }
+		  else {
+			  newSubRoot = oldSubRoot.right;
+			  oldSubRoot.right = newSubRoot.left;
+			  newSubRoot.left = oldSubRoot;
+		  }
+		  oldSubRoot.updateHeight();
+		  newSubRoot.updateHeight();
+		  this.rotations++;
+		  return newSubRoot;
+	  }
+
+	  /**
+	   * static int height(RecursiveNode<?, ?> node)
+	   *
+	   * returns the height of node, -1 for a missing son
+	   *
+	   * time complexity: O(1)
+	   */
+	  static int height(RecursiveNode<?, ?> node) {
+		  return (node == null) ? -1 : node.height;
+	  }
+  }
+
+  /**
+   * abstract static class RecursiveNode<N extends RecursiveNode<N, V>, V>
+   *
+   * a node of a RecursiveAVLTree, without its key (which is kept by the subclass)
+   */
+  abstract static class RecursiveNode<N extends RecursiveNode<N, V>, V> {
+	  V info;
+	  N left;
+	  N right;
+	  int height;
+
+	  RecursiveNode(V info) {
+		  this.info = info;
+		  this.height = 0;
+	  }
+
+	  void updateHeight() {
+		  this.height = Math.max(RecursiveAVLTree.height(this.left), RecursiveAVLTree.height(this.right)) + 1;
+	  }
+  }
+
+  /**
+   * public static class GenericAVLTree<K, V>
+   *
+   * An AVL Tree with distinct keys of any type, ordered by a Comparator, and info of any type.
+   * the keys are compared only by the comparator (never by equals).
+   * the balancing is shared with LongAVLTree in RecursiveAVLTree.
+   */
+  public static class GenericAVLTree<K, V> extends RecursiveAVLTree<GenericAVLTree.Node<K, V>, V> {
+	  private final Comparator<? super K> comparator;
+	  //the key of the current insert/delete
+	  private K key;
+
+	  /**
+	   * public GenericAVLTree(Comparator<? super K> comparator)
+	   *
+	   * constructor - creates an empty tree which orders its keys by comparator
+	   *
+	   * time complexity: O(1)
+	   */
+	  public GenericAVLTree(Comparator<? super K> comparator) {
+		  this.comparator = comparator;
+		  this.root = null;
+		  this.size = 0;
+	  }
+
+	  /**
+	   * public V search(K k)
+	   *
+	   * returns the info of an item with key k if it exists in the tree
+	   * otherwise, returns null
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public V search(K k) {
+		  Node<K, V> node = this.root;
+		  while (node != null) {
+			  int c = this.comparator.compare(k, node.key);
+			  if (c == 0)
+				  return node.info;
+			  node = (c < 0) ? node.left : node.right;
+		  }
+		  return null; //k isn't a key in the tree
+	  }
+
+	  /**
+	   * public int insert(K k, V i)
+	   *
+	   * inserts an item with key k and info i to the tree.
+	   * returns the number of rotations (a double rotation is counted as 2),
+	   * or -1 if an item with key k already exists in the tree.
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public int insert(K k, V i) {
+		  this.key = k;
+		  int result = insertKey(i);
+		  this.key = null; //the tree doesn't keep a reference to the key
+		  return result;
+	  }
+
+	  /**
+	   * public int delete(K k)
+	   *
+	   * deletes the item with key k from the tree, if it is there.
+	   * returns the number of rotations (a double rotation is counted as 2),
+	   * or -1 if an item with key k was not found in the tree.
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public int delete(K k) {
+		  this.key = k;
+		  int result = deleteKey();
+		  this.key = null; //the tree doesn't keep a reference to the key
+		  return result;
+	  }
+
+	  /**
+	   * public Object[] keysToArray()
+	   *
+	   * returns a sorted array which contains all keys in the tree,
+	   * or an empty array if the tree is empty
+	   *
+	   * time complexity: O(n)
+	   */
+	  public Object[] keysToArray() {
+		  Object[] arr = new Object[this.size];
+		  keysToArrayRec(this.root, arr, 0);
+		  return arr;
+	  }
+
+	  /**
+	   * private int keysToArrayRec(Node<K, V> node, Object[] arr, int index)
+	   *
+	   * a recursive method that fills arr with the keys of the subtree of node
+	   * from the given index, and returns the next free index
+	   *
+	   * time complexity: O(n)
+	   */
+	  private int keysToArrayRec(Node<K, V> node, Object[] arr, int index) {
+		  if (node == null) return index;
+		  index = keysToArrayRec(node.left, arr, index);
+		  arr[index++] = node.key;
+		  return keysToArrayRec(node.right, arr, index);
+	  }
+
+	  int compareKey(Node<K, V> node) {
+		  return this.comparator.compare(this.key, node.key);
+	  }
+
+	  Node<K, V> newNode(V info) {
+		  return new Node<K, V>(this.key, info);
+	  }
+
+	  /**
+	   * static final class Node<K, V>
+	   *
+	   * a node of the tree
+	   */
+	  static final class Node<K, V> extends RecursiveNode<Node<K, V>, V> {
+		  private final K key;
+
+		  private Node(K key, V info) {
+			  super(info);
+			  this.key = key;
+		  }
+	  }
+  }
+
+  /**
+   * public static class LongAVLTree<V>
+   *
+   * An AVL Tree with distinct long keys and info of any type.
+   * the keys are kept and compared as primitives, so no operation boxes them.
+   * the balancing is shared with GenericAVLTree in RecursiveAVLTree.
+   */
+  public static class LongAVLTree<V> extends RecursiveAVLTree<LongAVLTree.Node<V>, V> {
+	  //the key of the current insert/delete
+	  private long key;
+
+	  /**
+	   * public LongAVLTree()
+	   *
+	   * constructor - creates an empty tree
+	   *
+	   * time complexity: O(1)
+	   */
+	  public LongAVLTree() {
+		  this.root = null;
+		  this.size = 0;
+	  }
+
+	  /**
+	   * public V search(long k)
+	   *
+	   * returns the info of an item with key k if it exists in the tree
+	   * otherwise, returns null
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public V search(long k) {
+		  Node<V> node = this.root;
+		  while (node != null) {
+			  if (k == node.key)
+				  return node.info;
+			  node = (k < node.key) ? node.left : node.right;
+		  }
+		  return null; //k isn't a key in the tree
+	  }
+
+	  /**
+	   * public int insert(long k, V i)
+	   *
+	   * inserts an item with key k and info i to the tree.
+	   * returns the number of rotations (a double rotation is counted as 2),
+	   * or -1 if an item with key k already exists in the tree.
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public int insert(long k, V i) {
+		  this.key = k;
+		  return insertKey(i);
+	  }
+
+	  /**
+	   * public int delete(long k)
+	   *
+	   * deletes the item with key k from the tree, if it is there.
+	   * returns the number of rotations (a double rotation is counted as 2),
+	   * or -1 if an item with key k was not found in the tree.
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public int delete(long k) {
+		  this.key = k;
+		  return deleteKey();
+	  }
+
+	  /**
+	   * public long[] keysToArray()
+	   *
+	   * returns a sorted array which contains all keys in the tree,
+	   * or an empty array if the tree is empty
+	   *
+	   * time complexity: O(n)
+	   */
+	  public long[] keysToArray() {
+		  long[] arr = new long[this.size];
+		  keysToArrayRec(this.root, arr, 0);
+		  return arr;
+	  }
+
+	  /**
+	   * private int keysToArrayRec(Node<V> node, long[] arr, int index)
+	   *
+	   * a recursive method that fills arr with the keys of the subtree of node
+	   * from the given index, and returns the next free index
+	   *
+	   * time complexity: O(n)
+	   */
+	  private int keysToArrayRec(Node<V> node, long[] arr, int index) {
+		  if (node == null) return index;
+		  index = keysToArrayRec(node.left, arr, index);
+		  arr[index++] = node.key;
+		  return keysToArrayRec(node.right, arr, index);
+	  }
+
+	  int compareKey(Node<V> node) {
+		  return Long.compare(this.key, node.key);
+	  }
+
+	  Node<V> newNode(V info) {
+		  return new Node<V>(this.key, info);
+	  }
+
+	  /**
+	   * static final class Node<V>
+	   *
+	   * a node of the tree
+	   */
+	  static final class Node<V> extends RecursiveNode<Node<V>, V> {
+		  private final long key;
+
+		  private Node(long key, V info) {
+			  super(info);
+			  this.key = key;
+		  }
+	  }
+  }
+
+  /**
+   * public static class IntervalTree
+   *
+   * An interval tree: closed intervals [start, end] with info, keyed by their
+   * distinct starts, kept in an AVLTree of IntervalNodes. every node also keeps
+   * the maximal end in its subtree, so the queries skip every subtree
+   * whose intervals all end before the query, or start after it.
+   * the tree is balanced by the AVLTree itself (insert, delete and rotations).
+   */
+  public static class IntervalTree {
+	  private final AVLTree tree;
+
+	  /**
+	   * public IntervalTree()
+	   *
+	   * constructor
+	   *
+	   * time complexity: O(1)
+	   */
+	  public IntervalTree() {
+		  this.tree = new AVLTree();
+	  }
+
+	  /**
+	   * public int insert(int start, int end, String info)
+	   *
+	   * inserts the interval [start, end] with info to the tree.
+	   * returns the number of rebalancing operations, or -1 if an interval
+	   * with the same start already exists in the tree (like AVLTree.insert).
+	   * precondition: start <= end
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public int insert(int start, int end, String info) {
+		  AVLTree tree = this.tree;
+		  IAVLNode parent = tree.insertPosition(start);
+		  if (parent != null && parent.getKey() == start)
+			  return -1;
+		  return tree.insertAt(parent, tree.new IntervalNode(start, end, info));
+	  }
+
+	  /**
+	   * public int delete(int start)
+	   *
+	   * deletes the interval which starts at start, if it exists in the tree.
+	   * returns the number of rebalancing operations, or -1 if there is no such interval.
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public int delete(int start) {
+		  return this.tree.delete(start);
+	  }
+
+	  /**
+	   * public String search(int start)
+	   *
+	   * returns the info of the interval which starts at start, or null if there is none
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public String search(int start) {
+		  return this.tree.search(start);
+	  }
+
+	  /**
+	   * public int size()
+	   *
+	   * returns the number of intervals in the tree
+	   *
+	   * time complexity: O(1)
+	   */
+	  public int size() {
+		  return this.tree.size();
+	  }
+
+	  /**
+	   * public boolean empty()
+	   *
+	   * returns true if and only if the tree is empty
+	   *
+	   * time complexity: O(1)
+	   */
+	  public boolean empty() {
+		  return this.tree.empty();
+	  }
+
+	  /**
+	   * public boolean overlaps(int a, int b)
+	   *
+	   * returns true if and only if some interval in the tree overlaps [a, b].
+	   * goes down one path: if the left subtree has an interval which ends at a or
+	   * after it, then either it has an overlapping one or none starts before b,
+	   * so only the left subtree is checked, otherwise only the right one.
+	   * precondition: a <= b
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public boolean overlaps(int a, int b) {
+		  IAVLNode node = this.tree.empty() ? this.tree.virtualNode : this.tree.getRoot();
+		  while (node.isRealNode()) {
+			  IntervalNode interval = (IntervalNode) node;
+			  if (interval.getKey() <= b && a <= interval.end)
+				  return true;
+			  node = (maxEndOf(node.getLeft()) >= a) ? node.getLeft() : node.getRight();
+		  }
+		  return false;
+	  }
+
+	  /**
+	   * public int countOverlapping(int a, int b)
+	   *
+	   * returns the number of intervals in the tree which overlap [a, b]
+	   * precondition: a <= b
+	   *
+	   * time complexity: O(min(n, (k+1)*log(n))) for k the number of overlapping intervals
+	   */
+	  public int countOverlapping(int a, int b) {
+		  int[] count = new int[1];
+		  this.forEachOverlapping(a, b, (start, end, info) -> count[0]++);
+		  return count[0];
+	  }
+
+	  /**
+	   * public void forEachContaining(int p, IntervalConsumer action)
+	   *
+	   * calls action on every interval in the tree which contains the point p,
+	   * by the order of their starts
+	   *
+	   * time complexity: O(min(n, (k+1)*log(n))) for k the number of intervals containing p
+	   */
+	  public void forEachContaining(int p, IntervalConsumer action) {
+		  this.forEachOverlapping(p, p, action);
+	  }
+
+	  /**
+	   * public void forEachOverlapping(int a, int b, IntervalConsumer action)
+	   *
+	   * calls action on every interval in the tree which overlaps [a, b]
+	   * (start <= b and a <= end), by the order of their starts.
+	   * a subtree is skipped if its maximal end is before a, and the right
+	   * subtree of a node which starts after b is skipped.
+	   * precondition: a <= b
+	   *
+	   * time complexity: O(min(n, (k+1)*log(n))) for k the number of overlapping intervals
+	   */
+	  public void forEachOverlapping(int a, int b, IntervalConsumer action) {
+		  if (!this.tree.empty())
+			  forEachOverlapping(this.tree.getRoot(), a, b, action);
+	  }
+
+	  /**
+	   * private static void forEachOverlapping(IAVLNode node, int a, int b, IntervalConsumer action)
+	   *
+	   * a recursive method that calls action on every interval in the subtree of node
+	   * which overlaps [a, b], by the order of their starts
+	   *
+	   * time complexity: O(min(n, (k+1)*log(n))) for n the size of the subtree
+	   */
+	  private static void forEachOverlapping(IAVLNode node, int a, int b, IntervalConsumer action) {
+		  if (!node.isRealNode()) return;
+		  if (maxEndOf(node) < a) return; //every interval of the subtree ends before a
+		  IntervalNode interval = (IntervalNode) node;
+		  forEachOverlapping(node.getLeft(), a, b, action);
+		  if (interval.getKey() > b) return; //this and the right subtree start after b
+		  if (a <= interval.end)
+			  action.accept(interval.getKey(), interval.end, interval.getValue());
+		  forEachOverlapping(node.getRight(), a, b, action);
+	  }
+  }
+
+  /**
+   * public static class IntAVLTree
+   *
+   * An array based implementation of an AVL Tree with
+   * distinct integer keys and info.
+   * the nodes are indices into a NodeStore (key, left, right, parent, height, size)
+   * instead of AVLNode objects, the index 0 is the virtual node.
+   * the store is either parallel arrays on the heap (new IntAVLTree())
+   * or a memory mapped file (IntAVLTree.open(path)).
+   * trees which are created by split share the store of the original tree.
+   */
+  public static class IntAVLTree {
+	  private final NodeStore store;
+	  private int root;
+	  private int min;
+	  private int max;
+
+	  /**
+	   * public IntAVLTree()
+	   *
+	   * constructor
+	   *
+	   * time complexity: O(1)
+	   */
+	  public IntAVLTree() {
+		  this(new ArrayNodeStore(16));
+	  }
+
+	  /**
+	   * private IntAVLTree(NodeStore store)
+	   *
+	   * constructor - creates an empty tree over the given store
+	   *
+	   * time complexity: O(1)
+	   */
+	  private IntAVLTree(NodeStore store) {
+		  this.store = store;
+		  this.root = NodeStore.VIRTUAL;
+		  this.min = NodeStore.VIRTUAL;
+		  this.max = NodeStore.VIRTUAL;
+	  }
+
+	  /**
+	   * public static IntAVLTree open(Path path) throws IOException
+	   *
+	   * opens the tree which is kept in the memory mapped file path
+	   * (and its infos in path.info), or creates an empty one.
+	   * the nodes stay off the heap, and a tree which was flushed
+	   * is reopened as it was without rebuilding it.
+	   * both files are mapped in chunks of 64MB, so even a small tree
+	   * takes 64MB for each file (sparse on most file systems).
+	   * an info is appended to path.info and never overwritten, so the infos
+	   * of deleted items stay there as garbage until compact is called.
+	   *
+	   * time complexity: O(1)
+	   */
+	  public static IntAVLTree open(Path path) throws IOException {
+		  MappedNodeStore store = new MappedNodeStore(path);
+		  IntAVLTree tree = new IntAVLTree(store);
+		  tree.root = store.readHeader(MappedNodeStore.ROOT_POS);
+		  tree.min = store.readHeader(MappedNodeStore.MIN_POS);
+		  tree.max = store.readHeader(MappedNodeStore.MAX_POS);
+		  return tree;
+	  }
+
+	  /**
+	   * public void flush()
+	   *
+	   * if the tree is kept in a file, makes this tree the one the file holds
+	   * and writes all the changes to the disk.
+	   * trees created by split share the file, only the last one flushed is kept.
+	   *
+	   * time complexity: O(size of the file)
+	   */
+	  public void flush() {
+		  this.store.force(this.root, this.min, this.max);
+	  }
+
+	  /**
+	   * public void close() throws IOException
+	   *
+	   * flushes the tree and closes its file (if it has one),
+	   * the tree can't be used afterwards
+	   *
+	   * time complexity: O(size of the file)
+	   */
+	  public void close() throws IOException {
+		  flush();
+		  this.store.close();
+	  }
+
+	  /**
+	   * public void compact()
+	   *
+	   * reclaims the space of the infos of deleted items in the info file
+	   * of a tree which was opened with open, by moving the live infos
+	   * to the start of the file (nothing to do for a tree on the heap).
+	   * covers all the trees which share the store (after split).
+	   * the files don't shrink, the reclaimed space is used by the next inserts.
+	   * the infos are moved in place, so the tree should be flushed afterwards
+	   * and a crash in the middle of compact can lose infos.
+	   *
+	   * time complexity: O(n*log(n) + size of the live infos)
+	   */
+	  public void compact() {
+		  this.store.compact();
+	  }
+
+	  /**
+	   * public boolean empty()
+	   *
+	   * returns true if and only if the tree is empty
+	   *
+	   * time complexity: O(1)
+	   */
+	  public boolean empty() {
+		  return this.root == NodeStore.VIRTUAL;
+	  }
+
+	  /**
+	   * private int treePosition(int k)
+	   *
+	   * returns the node with key k if it exists in the tree
+	   * otherwise, returns its node predecessor if it was in the tree
+	   * precondition: the tree is not empty
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  private int treePosition(int k) {
+		  NodeStore s = this.store;
+		  int node = this.root;
+		  int position = node;
+		  //searching the given key, from the root down
+		  while (node != NodeStore.VIRTUAL) {
+			  position = node;
+			  int key = s.key(node);
+			  if (k == key)
+				  return node;
+			  else if (k < key)
+				  node = s.left(node);
+			  else
+				  node = s.right(node);
+		  }
+		  return position;
+	  }
+
+	  /**
+	   * public String search(int k)
+	   *
+	   * returns the info of an item with key k if it exists in the tree
+	   * otherwise, returns null
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public String search(int k) {
+		  if (this.empty()) return null;
+		  int node = treePosition(k);
+		  if (this.store.key(node) != k) return null; //k isn't a key in the tree
+		  return this.store.info(node);
+	  }
+
+	  /**
+	   * public int insert(int k, String i)
+	   *
+	   * inserts an item with key k and info i to the tree.
+	   * returns the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
+	   * promotion/rotation - counted as one rebalnce operation, double-rotation is counted as 2.
+	   * returns -1 if an item with key k already exists in the tree.
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public int insert(int k, String i) {
+		  NodeStore s = this.store;
+		  if (this.empty()) {
+			  this.root = s.allocate(k, i);
+			  this.min = this.root;
+			  this.max = this.root;
+			  return 0;
+		  }
+		  int parent = treePosition(k);
+		  if (s.key(parent) == k) return -1; //the key exists in the tree
+		  int node = s.allocate(k, i);
+		  s.setParent(node, parent);
+		  if (k < s.key(parent))
+			  s.setLeft(parent, node);
+		  else
+			  s.setRight(parent, node);
+		  if (k < s.key(this.min)) this.min = node;
+		  if (k > s.key(this.max)) this.max = node;
+		  return rebalance(parent);
+	  }
+
+	  /**
+	   * public int delete(int k)
+	   *
+	   * deletes an item with key k from the tree, if it is there.
+	   * returns the number of rebalancing operations, or 0 if no rebalancing operations were needed.
+	   * demotion/rotation - counted as one rebalnce operation, double-rotation is counted as 2.
+	   * returns -1 if an item with key k was not found in the tree.
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public int delete(int k) {
+		  NodeStore s = this.store;
+		  if (this.empty()) return -1;
+		  int node = treePosition(k);
+		  if (s.key(node) != k) return -1; //k isn't a key in the tree
+		  if (s.left(node) != NodeStore.VIRTUAL && s.right(node) != NodeStore.VIRTUAL) {
+			  //node has 2 children, its successor's item moves into it
+			  //and the successor (which has no left child) is removed instead
+			  int succ = s.right(node);
+			  while (s.left(succ) != NodeStore.VIRTUAL)
+				  succ = s.left(succ);
+			  s.setKey(node, s.key(succ));
+			  s.moveInfo(node, succ); //the info itself isn't copied
+			  if (this.max == succ) this.max = node;
+			  node = succ;
+		  }
+		  //node has 0 or 1 child
+		  int son = s.left(node) != NodeStore.VIRTUAL ? s.left(node) : s.right(node);
+		  int parent = s.parent(node);
+		  replaceSon(parent, node, son);
+		  s.release(node);
+		  if (this.root == NodeStore.VIRTUAL) {
+			  this.min = NodeStore.VIRTUAL;
+			  this.max = NodeStore.VIRTUAL;
+			  return 0;
+		  }
+		  if (this.min == node) this.min = leftmost(this.root);
+		  if (this.max == node) this.max = rightmost(this.root);
+		  return rebalance(parent);
+	  }
+
+	  /**
+	   * private void replaceSon(int parent, int oldSon, int newSon)
+	   *
+	   * puts newSon in the place of oldSon under parent
+	   * (or as the root, if parent is virtual)
+	   *
+	   * time complexity: O(1)
+	   */
+	  private void replaceSon(int parent, int oldSon, int newSon) {
+		  NodeStore s = this.store;
+		  if (parent == NodeStore.VIRTUAL)
+			  this.root = newSon;
+		  else if (s.left(parent) == oldSon)
+			  s.setLeft(parent, newSon);
+		  else
+			  s.setRight(parent, newSon);
+		  s.setParent(newSon, parent);
+	  }
+
+	  /**
+	   * private int rebalance(int startNode)
+	   *
+	   * Receives the lowest node whose subtree was changed,
+	   * and goes up to the root fixing heights and sizes
+	   * and rotating every node whose sons' heights differ by 2.
+	   * returns the number of balancing operations(promotion/demotion/rotation)
+	   * it used.
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  private int rebalance(int startNode) {
+		  NodeStore s = this.store;
+		  int rebalanceCount = 0;
+		  int node = startNode;
+		  while (node != NodeStore.VIRTUAL) {
+			  int left = s.left(node), right = s.right(node);
+			  int hd = s.height(left) - s.height(right);
+			  if (hd > 1) {
+				  if (s.height(s.left(left)) < s.height(s.right(left))) {
+					  rotate(left, 'L');
+					  rebalanceCount++;
+				  }
+				  rotate(node, 'R');
+				  rebalanceCount++;
+				  node = s.parent(node); //the new root of the subtree
+			  }
+			  else if (hd < -1) {
+				  if (s.height(s.right(right)) < s.height(s.left(right))) {
+					  rotate(right, 'R');
+					  rebalanceCount++;
+				  }
+				  rotate(node, 'L');
+				  rebalanceCount++;
+				  node = s.parent(node); //the new root of the subtree
+			  }
+			  else {
+				  int height = Math.max(s.height(left), s.height(right)) + 1;
+				  if (height != s.height(node)) { //promote/demote
+					  s.setHeight(node, height);
+					  rebalanceCount++;
+				  }
+				  s.setSize(node, s.size(left) + s.size(right) + 1);
+			  }
+			  node = s.parent(node);
+		  }
+		  return rebalanceCount;
+	  }
+
+	  /**
+	   * private void rotate(int oldSubRoot, char dir)
+	   *
+	   * Receives a node which is the root of the sub-tree
+	   * before rotating and character for the rotation's direction
+	   * and rotates the sub-tree to that direction.
+	   *
+	   * time complexity: O(1)
+	   */
+	  private void rotate(int oldSubRoot, char dir) {
+		  NodeStore s = this.store;
+		  int parent = s.parent(oldSubRoot);
+		  int newSubRoot, tmp;
+		  if (dir == 'R') {
+			  newSubRoot = s.left(oldSubRoot);
+			  tmp = s.right(newSubRoot);
+			  s.setLeft(oldSubRoot, tmp);
+			  s.setRight(newSubRoot, oldSubRoot);
+		  }
+		  else {
+			  newSubRoot = s.right(oldSubRoot);
+			  tmp = s.left(newSubRoot);
+			  s.setRight(oldSubRoot, tmp);
+			  s.setLeft(newSubRoot, oldSubRoot);
+		  }
+		  s.setParent(tmp, oldSubRoot);
+		  s.setParent(oldSubRoot, newSubRoot);
+		  replaceSon(parent, oldSubRoot, newSubRoot);
+		  update(oldSubRoot);
+		  update(newSubRoot);
+	  }
+
+	  /**
+	   * private void update(int node)
+	   *
+	   * updates the height and size of the node according to its sons
+	   *
+	   * time complexity: O(1)
+	   */
+	  private void update(int node) {
+		  NodeStore s = this.store;
+		  int left = s.left(node), right = s.right(node);
+		  s.setHeight(node, Math.max(s.height(left), s.height(right)) + 1);
+		  s.setSize(node, s.size(left) + s.size(right) + 1);
+	  }
+
+	  /**
+	   * private int leftmost(int node)
+	   *
+	   * returns the node with the smallest key in the subtree of node
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  private int leftmost(int node) {
+		  while (this.store.left(node) != NodeStore.VIRTUAL)
+			  node = this.store.left(node);
+		  return node;
+	  }
+
+	  /**
+	   * private int rightmost(int node)
+	   *
+	   * returns the node with the largest key in the subtree of node
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  private int rightmost(int node) {
+		  while (this.store.right(node) != NodeStore.VIRTUAL)
+			  node = this.store.right(node);
+		  return node;
+	  }
+
+	  /**
+	   * private int successor(int node)
+	   *
+	   * returns the successor of the node, or the virtual node if it is the maximum
+	   *
+	   * time complexity: O(log(n)), O(1) amortized over an in-order walk
+	   */
+	  private int successor(int node) {
+		  NodeStore s = this.store;
+		  if (s.right(node) != NodeStore.VIRTUAL)
+			  return leftmost(s.right(node));
+		  int parent = s.parent(node);
+		  while (parent != NodeStore.VIRTUAL && s.right(parent) == node) {
+			  node = parent;
+			  parent = s.parent(node);
+		  }
+		  return parent;
+	  }
+
+	  /**
+	   * public String min()
+	   *
+	   * Returns the info of the item with the smallest key in the tree,
+	   * or null if the tree is empty
+	   *
+	   * time complexity: O(1)
+	   */
+	  public String min() {
+		  if (this.empty()) return null;
+		  return this.store.info(this.min);
+	  }
+
+	  /**
+	   * public String max()
+	   *
+	   * Returns the info of the item with the largest key in the tree,
+	   * or null if the tree is empty
+	   *
+	   * time complexity: O(1)
+	   */
+	  public String max() {
+		  if (this.empty()) return null;
+		  return this.store.info(this.max);
+	  }
+
+	  /**
+	   * public int size()
+	   *
+	   * Returns the number of nodes in the tree.
+	   *
+	   * time complexity: O(1)
+	   */
+	  public int size() {
+		  return this.store.size(this.root);
+	  }
+
+	  /**
+	   * public int[] keysToArray()
+	   *
+	   * Returns a sorted array which contains all keys in the tree,
+	   * or an empty array if the tree is empty.
+	   * the tree is walked with the parent indices, without recursion.
+	   *
+	   * time complexity: O(n)
+	   */
+	  public int[] keysToArray() {
+		  int[] arr = new int[this.size()];
+		  int index = 0;
+		  for (int node = this.min; node != NodeStore.VIRTUAL; node = successor(node))
+			  arr[index++] = this.store.key(node);
+		  return arr;
+	  }
+
+	  /**
+	   * public String[] infoToArray()
+	   *
+	   * Returns an array which contains all info in the tree,
+	   * sorted by their respective keys,
+	   * or an empty array if the tree is empty.
+	   *
+	   * time complexity: O(n)
+	   */
+	  public String[] infoToArray() {
+		  String[] arr = new String[this.size()];
+		  int index = 0;
+		  for (int node = this.min; node != NodeStore.VIRTUAL; node = successor(node))
+			  arr[index++] = this.store.info(node);
+		  return arr;
+	  }
+
+	  /**
+	   * public IntAVLTree[] split(int x)
+	   *
+	   * splits the tree into 2 trees according to the key x.
+	   * Returns an array [t1, t2] with two trees. keys(t1) < x < keys(t2).
+	   * the item with key x (if there is one) is removed, and this tree is left empty.
+	   * t1 and t2 share the store of this tree.
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public IntAVLTree[] split(int x) {
+		  NodeStore s = this.store;
+		  IntAVLTree t1 = new IntAVLTree(s);
+		  IntAVLTree t2 = new IntAVLTree(s);
+		  if (!this.empty()) {
+			  int splitNode = treePosition(x);
+			  int parent = s.parent(splitNode);
+			  int son = splitNode;
+			  int left = s.left(splitNode);
+			  int right = s.right(splitNode);
+			  if (s.key(splitNode) < x) //x isn't in the tree, splitNode goes to the smaller keys
+				  left = joinNodes(left, splitNode, NodeStore.VIRTUAL);
+			  else if (s.key(splitNode) > x) //x isn't in the tree, splitNode goes to the bigger keys
+				  right = joinNodes(NodeStore.VIRTUAL, splitNode, right);
+			  else
+				  s.release(splitNode);
+			  //join every ancestor with its other subtree, to the side it belongs to
+			  while (parent != NodeStore.VIRTUAL) {
+				  int next = s.parent(parent);
+				  if (s.right(parent) == son)
+					  left = joinNodes(s.left(parent), parent, left);
+				  else
+					  right = joinNodes(right, parent, s.right(parent));
+				  son = parent;
+				  parent = next;
+			  }
+			  t1.setRootNode(left);
+			  t2.setRootNode(right);
+			  this.setRootNode(NodeStore.VIRTUAL);
+		  }
+		  IntAVLTree[] retVal = {t1, t2};
+		  return retVal;
+	  }
+
+	  /**
+	   * public int join(int k, String i, IntAVLTree t)
+	   *
+	   * joins t and a new item with key k and info i with the tree.
+	   * Returns the complexity of the operation (|tree.rank - t.rank| + 1).
+	   * precondition: keys(x,t) < keys() or keys(x,t) > keys(). t/tree might be empty (rank = -1).
+	   * t is left empty. if t doesn't share the store of this tree,
+	   * its items are copied (in O(|t|*log(n)) time).
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  public int join(int k, String i, IntAVLTree t) {
+		  NodeStore s = this.store;
+		  int complexity = Math.abs(s.height(this.root) - t.store.height(t.root)) + 1;
+		  if (t.store != s) {
+			  //t's nodes live in another store, so they are copied into this tree
+			  for (int node = t.min; node != NodeStore.VIRTUAL; node = t.successor(node))
+				  this.insert(t.store.key(node), t.store.info(node));
+			  t.setRootNode(NodeStore.VIRTUAL);
+			  this.insert(k, i);
+			  return complexity;
+		  }
+		  int x = s.allocate(k, i);
+		  int other = t.root;
+		  t.setRootNode(NodeStore.VIRTUAL);
+		  boolean otherIsLeft = (other != NodeStore.VIRTUAL) ? s.key(other) < k : s.key(this.root) > k;
+		  if (otherIsLeft)
+			  this.setRootNode(joinNodes(other, x, this.root));
+		  else
+			  this.setRootNode(joinNodes(this.root, x, other));
+		  return complexity;
+	  }
+
+	  /**
+	   * private int joinNodes(int left, int x, int right)
+	   *
+	   * joins the subtrees left and right with the node x between them,
+	   * and returns the root of the joined subtree.
+	   * uses this.root while rebalancing.
+	   * precondition: keys(left) < x.key < keys(right)
+	   *
+	   * time complexity: O(|left.height - right.height| + 1)
+	   */
+	  private int joinNodes(int left, int x, int right) {
+		  NodeStore s = this.store;
+		  s.setParent(left, NodeStore.VIRTUAL);
+		  s.setParent(right, NodeStore.VIRTUAL);
+		  int leftHeight = s.height(left), rightHeight = s.height(right);
+		  if (Math.abs(leftHeight - rightHeight) <= 1) {
+			  s.setLeft(x, left);
+			  s.setRight(x, right);
+			  s.setParent(left, x);
+			  s.setParent(right, x);
+			  s.setParent(x, NodeStore.VIRTUAL);
+			  update(x);
+			  return x;
+		  }
+		  int parent, currNode;
+		  if (leftHeight > rightHeight) {
+			  //find the first right node which its height is at most the height of right + 1
+			  currNode = left;
+			  parent = currNode;
+			  while (s.height(currNode) > rightHeight + 1) {
+				  parent = currNode;
+				  currNode = s.right(currNode);
+			  }
+			  s.setLeft(x, currNode);
+			  s.setRight(x, right);
+			  s.setRight(parent, x);
+			  this.root = left;
+		  }
+		  else {
+			  //find the first left node which its height is at most the height of left + 1
+			  currNode = right;
+			  parent = currNode;
+			  while (s.height(currNode) > leftHeight + 1) {
+				  parent = currNode;
+				  currNode = s.left(currNode);
+			  }
+			  s.setLeft(x, left);
+			  s.setRight(x, currNode);
+			  s.setLeft(parent, x);
+			  this.root = right;
+		  }
+		  s.setParent(s.left(x), x);
+		  s.setParent(s.right(x), x);
+		  s.setParent(x, parent);
+		  update(x);
+		  rebalance(parent);
+		  return this.root;
+	  }
+
+	  /**
+	   * private void setRootNode(int node)
+	   *
+	   * makes node the (detached) root of the tree, and updates the min and max
+	   *
+	   * time complexity: O(log(n))
+	   */
+	  private void setRootNode(int node) {
+		  this.root = node;
+		  this.store.setParent(node, NodeStore.VIRTUAL);
+		  this.min = node == NodeStore.VIRTUAL ? node : leftmost(node);
+		  this.max = node == NodeStore.VIRTUAL ? node : rightmost(node);
+	  }
+  }
+
+  /**
+   * private abstract static class NodeStore
+   *
+   * the storage of the nodes of IntAVLTree, every node is a fixed set of
+   * fields (key, info, left, right, parent, height, size) addressed by its index.
+   * slot 0 is the virtual node (height -1, size 0) and is never written,
+   * deleted slots are kept in a free list linked through the right field.
+   */
+  private abstract static class NodeStore {
+	  static final int VIRTUAL = 0;
+	  //the first slot which was never used
+	  int next;
+	  //the head of the free list
+	  int free;
+
+	  /**
+	   * private int allocate(int key, String info)
+	   *
+	   * returns a new leaf node with the given key and info,
+	   * reusing a deleted slot if there is one
+	   *
+	   * time complexity: O(1) amortized
+	   */
+	  private int allocate(int key, String info) {
+		  int node;
+		  if (this.free != VIRTUAL) {
+			  node = this.free;
+			  this.free = right(node);
+		  }
+		  else {
+			  ensureCapacity(this.next + 1);
+			  node = this.next++;
+		  }
+		  setKey(node, key);
+		  setInfo(node, info);
+		  setLeft(node, VIRTUAL);
+		  setRight(node, VIRTUAL);
+		  setParent(node, VIRTUAL);
+		  setHeight(node, 0);
+		  setSize(node, 1);
+		  return node;
+	  }
+
+	  /**
+	   * private void release(int node)
+	   *
+	   * returns the slot of a deleted node to the free list
+	   *
+	   * time complexity: O(1)
+	   */
+	  private void release(int node) {
+		  setInfo(node, null);
+		  setRight(node, this.free);
+		  this.free = node;
+	  }
+
+	  /**
+	   * abstract void ensureCapacity(int slots)
+	   *
+	   * makes room for at least the given number of slots
+	   */
+	  abstract void ensureCapacity(int slots);
+
+	  /**
+	   * void force(int root, int min, int max)
+	   *
+	   * makes the nodes and the given root, min and max durable
+	   * (nothing to do for a store on the heap)
+	   */
+	  void force(int root, int min, int max) {
+	  }
+
+	  /**
+	   * void close()
+	   *
+	   * releases the resources of the store
+	   * (nothing to do for a store on the heap)
+	   */
+	  void close() throws IOException {
+	  }
+
+	  /**
+	   * void compact()
+	   *
+	   * reclaims the space of the infos of deleted nodes
+	   * (nothing to do for a store on the heap)
+	   */
+	  void compact() {
+	  }
+
+	  //accessors of the node fields, the virtual node is never written
+	  abstract int key(int node);
+	  abstract String info(int node);
+	  abstract int left(int node);
+	  abstract int right(int node);
+	  abstract int parent(int node);
+	  abstract int height(int node);
+	  abstract int size(int node);
+	  abstract void setKey(int node, int key);
+	  abstract void setInfo(int node, String info);
+	  abstract void moveInfo(int to, int from);
+	  abstract void setLeft(int node, int left);
+	  abstract void setRight(int node, int right);
+	  abstract void setParent(int node, int parent);
+	  abstract void setHeight(int node, int height);
+	  abstract void setSize(int node, int size);
+  }
+
+  /**
+   * private static final class ArrayNodeStore
+   *
+   * NodeStore which holds the fields in parallel arrays on the heap
+   */
+  private static final class ArrayNodeStore extends NodeStore {
+	  private int[] keys;
+	  private int[] lefts;
+	  private int[] rights;
+	  private int[] parents;
+	  private int[] heights;
+	  private int[] sizes;
+	  private String[] infos;
+
+	  /**
+	   * private ArrayNodeStore(int capacity)
+	   *
+	   * constructor - creates arrays for capacity nodes (they grow when needed)
+	   *
+	   * time complexity: O(capacity)
+	   */
+	  private ArrayNodeStore(int capacity) {
+		  this.keys = new int[capacity];
+		  this.lefts = new int[capacity];
+		  this.rights = new int[capacity];
+		  this.parents = new int[capacity];
+		  this.heights = new int[capacity];
+		  this.sizes = new int[capacity];
+		  this.infos = new String[capacity];
+		  this.heights[VIRTUAL] = -1;
+		  this.next = VIRTUAL + 1;
+		  this.free = VIRTUAL;
+	  }
+
+	  /**
+	   * void ensureCapacity(int slots)
+	   *
+	   * doubles the capacity of all the arrays until slots nodes fit
+	   *
+	   * time complexity: O(n) when the arrays grow, O(1) otherwise
+	   */
+	  void ensureCapacity(int slots) {
+		  if (slots <= this.keys.length) return;
+		  int capacity = this.keys.length;
+		  while (capacity < slots) capacity *= 2;
+		  this.keys = Arrays.copyOf(this.keys, capacity);
+		  this.lefts = Arrays.copyOf(this.lefts, capacity);
+		  this.rights = Arrays.copyOf(this.rights, capacity);
+		  this.parents = Arrays.copyOf(this.parents, capacity);
+		  this.heights = Arrays.copyOf(this.heights, capacity);
+		  this.sizes = Arrays.copyOf(this.sizes, capacity);
+		  this.infos = Arrays.copyOf(this.infos, capacity);
+	  }
+
+	  int key(int node) { return this.keys[node]; }
+	  String info(int node) { return this.infos[node]; }
+	  int left(int node) { return this.lefts[node]; }
+	  int right(int node) { return this.rights[node]; }
+	  int parent(int node) { return this.parents[node]; }
+	  int height(int node) { return this.heights[node]; }
+	  int size(int node) { return this.sizes[node]; }
+	  void setKey(int node, int key) { this.keys[node] = key; }
+	  void setInfo(int node, String info) { this.infos[node] = info; }
+	  void moveInfo(int to, int from) { this.infos[to] = this.infos[from]; }
+	  void setLeft(int node, int left) { if (node != VIRTUAL) this.lefts[node] = left; }
+	  void setRight(int node, int right) { if (node != VIRTUAL) this.rights[node] = right; }
+	  void setParent(int node, int parent) { if (node != VIRTUAL) this.parents[node] = parent; }
+	  void setHeight(int node, int height) { this.heights[node] = height; }
+	  void setSize(int node, int size) { this.sizes[node] = size; }
+  }
+
+  /**
+   * private static final class MappedNodeStore
+   *
+   * NodeStore which keeps the nodes as fixed width records in a memory mapped file,
+   * so they are off the heap and survive a restart.
+   * every record is 32 bytes: key, left, right, parent, height, size and the
+   * position of the info in a second mapped file (-1 for null).
+   * record 0 is the virtual node and record 1 is the header
+   * (magic, next, free, root, min, max, end of the info file).
+   * an info is written as its length and its UTF-8 bytes, and is never
+   * overwritten, so replaced and deleted infos are left as garbage in the info file
+   * until compact moves the live infos down over them.
+   */
+  private static final class MappedNodeStore extends NodeStore {
+	  private static final int MAGIC = 0x41564c31;
+	  private static final int RECORD = 32;
+	  private static final int KEY = 0, LEFT = 4, RIGHT = 8, PARENT = 12, HEIGHT = 16, SIZE = 20, INFO = 24;
+	  private static final int HEADER = 1;
+	  private static final int MAGIC_POS = 0, NEXT_POS = 4, FREE_POS = 8, ROOT_POS = 12, MIN_POS = 16, MAX_POS = 20, INFO_END_POS = 24;
+	  private final MappedRegion nodes;
+	  private final MappedRegion infos;
+	  private long infoEnd;
+
+	  /**
+	   * private MappedNodeStore(Path path)
+	   *
+	   * constructor - maps the nodes file path and the info file path.info,
+	   * and creates them if the nodes file doesn't hold a tree yet
+	   *
+	   * time complexity: O(1)
+	   */
+	  private MappedNodeStore(Path path) throws IOException {
+		  this.nodes = new MappedRegion(path);
+		  this.infos = new MappedRegion(path.resolveSibling(path.getFileName() + ".info"));
+		  if (this.nodes.getInt(header(MAGIC_POS)) == MAGIC) {
+			  this.next = this.nodes.getInt(header(NEXT_POS));
+			  this.free = this.nodes.getInt(header(FREE_POS));
+			  this.infoEnd = this.nodes.getLong(header(INFO_END_POS));
+		  }
+		  else {
+			  this.nodes.putInt(field(VIRTUAL, HEIGHT), -1);
+			  this.nodes.putInt(field(VIRTUAL, SIZE), 0);
+			  this.next = HEADER + 1;
+			  this.free = VIRTUAL;
+			  this.infoEnd = 0;
+			  writeHeader(VIRTUAL, VIRTUAL, VIRTUAL);
+		  }
+	  }
+
+	  /**
+	   * private static long field(int node, int offset)
+	   *
+	   * returns the position of a field of the node in the nodes file
+	   *
+	   * time complexity: O(1)
+	   */
+	  private static long field(int node, int offset) {
+		  return (long) node * RECORD + offset;
+	  }
+
+	  /**
+	   * private static long header(int offset)
+	   *
+	   * returns the position of a header field in the nodes file
+	   *
+	   * time complexity: O(1)
+	   */
+	  private static long header(int offset) {
+		  return field(HEADER, offset);
+	  }
+
+	  /**
+	   * private int readHeader(int offset)
+	   *
+	   * returns the header field at offset (root, min or max)
+	   *
+	   * time complexity: O(1)
+	   */
+	  private int readHeader(int offset) {
+		  return this.nodes.getInt(header(offset));
+	  }
+
+	  /**
+	   * private void writeHeader(int root, int min, int max)
+	   *
+	   * writes the header, with the given root, min and max of the tree
+	   *
+	   * time complexity: O(1)
+	   */
+	  private void writeHeader(int root, int min, int max) {
+		  this.nodes.putInt(header(NEXT_POS), this.next);
+		  this.nodes.putInt(header(FREE_POS), this.free);
+		  this.nodes.putInt(header(ROOT_POS), root);
+		  this.nodes.putInt(header(MIN_POS), min);
+		  this.nodes.putInt(header(MAX_POS), max);
+		  this.nodes.putLong(header(INFO_END_POS), this.infoEnd);
+		  this.nodes.putInt(header(MAGIC_POS), MAGIC);
+	  }
+
+	  /**
+	   * private void force(int root, int min, int max)
+	   *
+	   * writes the header and forces both files to the disk
+	   *
+	   * time complexity: O(size of the files)
+	   */
+	  void force(int root, int min, int max) {
+		  writeHeader(root, min, max);
+		  this.infos.force();
+		  this.nodes.force();
+	  }
+
+	  /**
+	   * private void close()
+	   *
+	   * closes both files
+	   *
+	   * time complexity: O(1)
+	   */
+	  void close() throws IOException {
+		  this.infos.close();
+		  this.nodes.close();
+	  }
+
+	  void ensureCapacity(int slots) {
+		  this.nodes.ensureCapacity((long) slots * RECORD);
+	  }
+
+	  int key(int node) { return this.nodes.getInt(field(node, KEY)); }
+	  int left(int node) { return this.nodes.getInt(field(node, LEFT)); }
+	  int right(int node) { return this.nodes.getInt(field(node, RIGHT)); }
+	  int parent(int node) { return this.nodes.getInt(field(node, PARENT)); }
+	  int height(int node) { return this.nodes.getInt(field(node, HEIGHT)); }
+	  int size(int node) { return this.nodes.getInt(field(node, SIZE)); }
+	  void setKey(int node, int key) { this.nodes.putInt(field(node, KEY), key); }
+	  void setLeft(int node, int left) { if (node != VIRTUAL) this.nodes.putInt(field(node, LEFT), left); }
+	  void setRight(int node, int right) { if (node != VIRTUAL) this.nodes.putInt(field(node, RIGHT), right); }
+	  void setParent(int node, int parent) { if (node != VIRTUAL) this.nodes.putInt(field(node, PARENT), parent); }
+	  void setHeight(int node, int height) { this.nodes.putInt(field(node, HEIGHT), height); }
+	  void setSize(int node, int size) { this.nodes.putInt(field(node, SIZE), size); }
+
+	  /**
+	   * String info(int node)
+	   *
+	   * reads the info of the node from the info file
+	   *
+	   * time complexity: O(length of the info)
+	   */
+	  String info(int node) {
+		  long position = this.nodes.getLong(field(node, INFO));
+		  if (position < 0) return null;
+		  byte[] bytes = new byte[this.infos.getInt(position)];
+		  this.infos.get(position + 4, bytes);
+		  return new String(bytes, StandardCharsets.UTF_8);
+	  }
+
+	  /**
+	   * void setInfo(int node, String info)
+	   *
+	   * appends the info to the info file and points the node to it
+	   *
+	   * time complexity: O(length of the info)
+	   */
+	  void setInfo(int node, String info) {
+		  if (info == null) {
+			  this.nodes.putLong(field(node, INFO), -1);
+			  return;
+		  }
+		  byte[] bytes = info.getBytes(StandardCharsets.UTF_8);
+		  //the length is kept aligned, so it never crosses a chunk of the file
+		  long position = (this.infoEnd + 3) & ~3L;
+		  this.infos.ensureCapacity(position + 4 + bytes.length);
+		  this.infos.putInt(position, bytes.length);
+		  this.infos.put(position + 4, bytes);
+		  this.infoEnd = position + 4 + bytes.length;
+		  this.nodes.putLong(field(node, INFO), position);
+	  }
+
+	  /**
+	   * void moveInfo(int to, int from)
+	   *
+	   * points the node to to the info of the node from, without writing it again
+	   *
+	   * time complexity: O(1)
+	   */
+	  void moveInfo(int to, int from) {
+		  this.nodes.putLong(field(to, INFO), this.nodes.getLong(field(from, INFO)));
+	  }
+
+	  /**
+	   * void compact()
+	   *
+	   * moves the infos of the live nodes (the used slots which aren't in the free list)
+	   * to the start of the info file, in the order of their positions,
+	   * so every info moves only backwards and none is overwritten before it is moved.
+	   *
+	   * time complexity: O(n*log(n) + size of the live infos)
+	   */
+	  void compact() {
+		  boolean[] freed = new boolean[this.next];
+		  for (int node = this.free; node != VIRTUAL; node = right(node))
+			  freed[node] = true;
+		  long[] positions = new long[this.next];
+		  int count = 0;
+		  for (int node = HEADER + 1; node < this.next; node++) {
+			  long position = this.nodes.getLong(field(node, INFO));
+			  if (!freed[node] && position >= 0)
+				  positions[count++] = position;
+		  }
+		  Arrays.sort(positions, 0, count);
+		  long[] moved = new long[count];
+		  long end = 0;
+		  for (int i = 0; i < count; i++) {
+			  long position = positions[i];
+			  byte[] bytes = new byte[this.infos.getInt(position)];
+			  this.infos.get(position + 4, bytes);
+			  long target = (end + 3) & ~3L;
+			  this.infos.putInt(target, bytes.length);
+			  this.infos.put(target + 4, bytes);
+			  moved[i] = target;
+			  end = target + 4 + bytes.length;
+		  }
+		  for (int node = HEADER + 1; node < this.next; node++) {
+			  long position = this.nodes.getLong(field(node, INFO));
+			  if (!freed[node] && position >= 0)
+				  this.nodes.putLong(field(node, INFO), moved[Arrays.binarySearch(positions, 0, count, position)]);
+		  }
+		  this.infoEnd = end;
+	  }
+  }
+
+  /**
+   * private static final class MappedRegion
+   *
+   * a file which is memory mapped in fixed size chunks,
+   * so it can grow past the 2GB limit of a single MappedByteBuffer.
+   * ints and longs must not cross a chunk (they are aligned to their size).
+   */
+  private static final class MappedRegion {
+	  private static final int CHUNK_BITS = 26;
+	  private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+	  private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+	  private final FileChannel channel;
+	  private MappedByteBuffer[] chunks;
+
+	  /**
+	   * private MappedRegion(Path path)
+	   *
+	   * constructor - opens (or creates) the file and maps all of it
+	   *
+	   * time complexity: O(number of chunks)
+	   */
+	  private MappedRegion(Path path) throws IOException {
+		  this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				  StandardOpenOption.READ, StandardOpenOption.WRITE);
+		  this.chunks = new MappedByteBuffer[0];
+		  ensureCapacity(Math.max(this.channel.size(), 1));
+	  }
+
+	  /**
+	   * private void ensureCapacity(long bytes)
+	   *
+	   * maps (and so extends the file by) more chunks until bytes fit
+	   *
+	   * time complexity: O(1) amortized
+	   */
+	  private void ensureCapacity(long bytes) {
+		  int count = this.chunks.length;
+		  if (((long) count << CHUNK_BITS) >= bytes) return;
+		  int newCount = (int) ((bytes + CHUNK_MASK) >>> CHUNK_BITS);
+		  MappedByteBuffer[] newChunks = Arrays.copyOf(this.chunks, newCount);
+		  try {
+			  for (int i = count; i < newCount; i++)
+				  newChunks[i] = this.channel.map(FileChannel.MapMode.READ_WRITE, (long) i << CHUNK_BITS, CHUNK_SIZE);
+		  }
+		  catch (IOException e) {
+			  throw new UncheckedIOException(e);
+		  }
+		  this.chunks = newChunks;
+	  }
+
+	  private int getInt(long position) { return this.chunks[(int) (position >>> CHUNK_BITS)].getInt((int) (position & CHUNK_MASK)); }
+	  private long getLong(long position) { return this.chunks[(int) (position >>> CHUNK_BITS)].getLong((int) (position & CHUNK_MASK)); }
+	  private void putInt(long position, int value) { this.chunks[(int) (position >>> CHUNK_BITS)].putInt((int) (position & CHUNK_MASK), value); }
+	  private void putLong(long position, long value) { this.chunks[(int) (position >>> CHUNK_BITS)].putLong((int) (position & CHUNK_MASK), value); }
+
+	  /**
+	   * private void get(long position, byte[] bytes)
+	   *
+	   * reads bytes.length bytes from the position, across chunks if needed
+	   *
+	   * time complexity: O(bytes.length)
+	   */
+	  private void get(long position, byte[] bytes) {
+		  int done = 0;
+		  while (done < bytes.length) {
+			  long current = position + done;
+			  int offset = (int) (current & CHUNK_MASK);
+			  int length = (int) Math.min(bytes.length - done, CHUNK_SIZE - offset);
+			  this.chunks[(int) (current >>> CHUNK_BITS)].get(offset, bytes, done, length);
+			  done += length;
+		  }
+	  }
 
-   /**
-   * public class AVLNode
-   *
-   * If you wish to implement classes other than AVLTree
-   * (for example AVLNode), do it in this file, not in 
-   * another file.
-   * This class can and must be modified.
-   * (It must implement IAVLNode)
-   */
-  public class AVLNode implements IAVLNode{
-	  private int key;
-	  private String info;
-	  private IAVLNode left;
-	  private IAVLNode right;
-	  private IAVLNode parent;
-	  private boolean isRealNode;
-	  private int height;
-	  private int size;
-	  
 	  /**
-	   * public AVLNode(int key, String info)
+	   * private void put(long position, byte[] bytes)
 	   *
-	   * constructor - creates real node
-	   * 
-	   * time complexity: O(1)
+	   * writes the bytes at the position, across chunks if needed
 	   *
+	   * time complexity: O(bytes.length)
 	   */
-	  public AVLNode(int key, String info) {
-		  this.isRealNode = true;
-		  this.key = key;
-		  this.info = info;
-		  this.left = new AVLNode();
-		  this.right = new AVLNode();
-		  this.size = 1;
-		  this.height = 0;
+	  private void put(long position, byte[] bytes) {
+		  int done = 0;
+		  while (done < bytes.length) {
+			  long current = position + done;
+			  int offset = (int) (current & CHUNK_MASK);
+			  int length = (int) Math.min(bytes.length - done, CHUNK_SIZE - offset);
+			  this.chunks[(int) (current >>> CHUNK_BITS)].put(offset, bytes, done, length);
+			  done += length;
+		  }
 	  }
-	  
+
 	  /**
-	   * public AVLNode()
+	   * private void force()
 	   *
-	   * constructor - creates virtual node
-	   * 
-	   * time complexity: O(1)
+	   * writes the changes of all the chunks to the disk
 	   *
+	   * time complexity: O(size of the file)
 	   */
-	  public AVLNode() {
-		  this.isRealNode = false;
-		  this.key = -1;
-		  this.info = null;
-		  this.left = null;
-		  this.right = null;
-		  this.size = 0;
-		  this.height = -1;
+	  private void force() {
+		  for (MappedByteBuffer chunk : this.chunks)
+			  chunk.force();
 	  }
-	  
+
 	  /**
-	    * public int getKey()
-	    *
-	    * returns the key of the node, or null if the node is virtual
-	    * 
-	    * time complexity: O(1)
-	    */
-		public int getKey()
-		{
-			return this.key;
-		}
-		
-		/**
-		* public String getValue()
-		*
-		* returns the info of the node, or null if the node is virtual
-		* 
-		* time complexity: O(1)
-		*/
-		public String getValue()
-		{
-			return this.info;
-		}
-		
-		/**
-		* public void setLeft(IAVLNode node)
-		*
-		* updates the left son of the node
-		* 
-		* time complexity: O(1)
-		*/
-		public void setLeft(IAVLNode node)
-		{
-			if(isRealNode())
-				this.left = node; 
-		}
-		
-		/**
-		* public IAVLNode getLeft()
-		*
-		* returns the left son of the node
-		* 
-		* time complexity: O(1)
-		*/
-		public IAVLNode getLeft()
-		{
-			return this.left;
-		}
-		
-		/**
-		* public void setRight(IAVLNode node)
-		*
-		* updates the right son of the node
-		* 
-		* time complexity: O(1)
-		*/
-		public void setRight(IAVLNode node)
-		{
-			if(isRealNode())
-				this.right = node;
-		}
-		
-		/**
-		* public IAVLNode getRight()
-		*
-		* returns the right son of the node
-		* 
-		* time complexity: O(1)
-		*/
-		public IAVLNode getRight()
-		{
-			return this.right;
-		}
-		
-		/**
-		* public void setParent(IAVLNode node)
-		*
-		* updates the parent of the node
-		* 
-		* time complexity: O(1)
-		*/
-		public void setParent(IAVLNode node)
-		{
-			this.parent = node;
-		}
-		
-		/**
-		* public IAVLNode getParent()
-		*
-		* returns the parent of the node
-		* 
-		* time complexity: O(1)
-		*/
-		public IAVLNode getParent()
-		{
-			return this.parent;
-		}
-		
-		/**
-		* public boolean isRealNode()
-		*
-		* returns True if this is a non-virtual AVL node
-		* 
-		* time complexity: O(1)
-		*/
-		public boolean isRealNode()
-		{
-			return this.isRealNode;
-		}
-		
-		/**
-		* public void setHeight(int height)
-		*
-		* updates the height of the node
-		* 
-		* time complexity: O(1)
-		*/
-	    public void setHeight(int height)
-	    {
-	    	this.height = height;
-	    }
-	    
-	    /**
-		* public void updateHeight()
-		*
-		* updates the height of the node according the node's sons' height
-		* 
-		* time complexity: O(1)
-		*/
-	    public void updateHeight() {
-	    	this.height = Math.max(this.getLeft().getHeight(), this.getRight().getHeight()) + 1;
-	    }
-	    
-	    /**
-		* public int getHeight()
-		*
-		* returns the height of the node 
-		* 
-		* time complexity: O(1)
-		*/
-	    public int getHeight()
-	    {
-	    	return this.height;
-	    }
-	    
-	    /**
-		* public int getSize()
-		*
-		* returns the size of the subtree that its root is the node 
-		* 
-		* time complexity: O(1)
-		*/
-	    public int getSize()
-	    {
-			return this.size;
-	    }
-	    
-	    /**
-		* public void updateSize()
-		*
-		* updates the size of the subtree that its root is the node according the node's sons' height
-		* 
-		* time complexity: O(1)
-		*/
-	    public void updateSize()
-	    {
-	    	this.size = this.getLeft().getSize() + this.getRight().getSize() + 1;		
-	    }
-	    
-	    /**
-		* public boolean isRightSon()
-		*
-		* returns True if this is a right son to its parent
-		* 
-		* time complexity: O(1)
-		*/
-		public boolean isRightSon() {
-			return this.getParent().getRight() == this;
-		}
-		
-		/**
-		* public boolean[] whichSons()
-		*
-		* returns array that contains if node has real left son and real right son
-		* 
-		* time complexity: O(1)
-		*/
-		public boolean[] whichSons() {
-			boolean hasLeft = this.getLeft().isRealNode();
-			boolean hasRight = this.getRight().isRealNode();
-			boolean[] sons = new boolean[] {hasLeft, hasRight};
-			return sons; 
-		}
-		
-		/**
-		* public void connectSon(IAVLNode son, char dir)
-		*
-		* gets son and direction and make this node its parent according to the direction
-		* 
-		* time complexity: O(1)
-		*/
-		public void connectSon(IAVLNode son, char dir) {
-			if (dir=='R')
-				this.setRight(son);
-			else
-				this.setLeft(son);
-			son.setParent(this);
-		}
-	    
+	   * private void close()
+	   *
+	   * forces the file to the disk and closes it
+	   * (the chunks stay mapped until they are garbage collected)
+	   *
+	   * time complexity: O(size of the file)
+	   */
+	  private void close() throws IOException {
+		  force();
+		  this.channel.close();
+	  }
   }
 
 }